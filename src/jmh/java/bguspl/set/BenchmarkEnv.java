@@ -0,0 +1,51 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates headless game environments for the benchmarks.
+ */
+public class BenchmarkEnv {
+
+    /**
+     * @return - the benchmark defaults: no table delay, no freezes and no logging.
+     */
+    public static Properties defaults() {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        return properties;
+    }
+
+    /**
+     * @param grid - the table dimensions as "ROWSxCOLUMNS" (e.g. "3x4").
+     */
+    public static Properties defaults(int featureSize, int featureCount, String grid, int players) {
+        Properties properties = defaults();
+        String[] dimensions = grid.split("x");
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("Rows", dimensions[0]);
+        properties.put("Columns", dimensions[1]);
+        properties.put("ComputerPlayers", Integer.toString(players));
+        return properties;
+    }
+
+    /**
+     * Creates an environment without a user interface (the UserInterfaceDecorator only logs, and logging is off).
+     */
+    public static Env create(Properties properties) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        return new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util);
+    }
+}
@@ -0,0 +1,24 @@
+package bguspl.set;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The benchmarks jar entry point. Accepts the regular JMH command line, but unless told otherwise writes the
+ * results as JSON (to jmh-result.json), so they can be compared between builds.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+        if (!cmdOptions.getResultFormat().hasValue()) builder.resultFormat(ResultFormatType.JSON);
+        if (!cmdOptions.getResult().hasValue()) builder.result("jmh-result.json");
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,60 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures UtilImpl::findSets on a full shuffled deck and on a table worth of cards, as used by Dealer::shouldFinish
+ * (count = 1) and Table::hints (count = Integer.MAX_VALUE).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindSetsBenchmark {
+
+    @Param({"3"})
+    public int featureSize;
+
+    @Param({"4"})
+    public int featureCount;
+
+    @Param({"3x4"})
+    public String grid;
+
+    private Util util;
+    private List<Integer> deck;
+    private List<Integer> table;
+
+    @Setup
+    public void setUp() {
+        Env env = BenchmarkEnv.create(BenchmarkEnv.defaults(featureSize, featureCount, grid, 2));
+        util = env.util;
+        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(42));
+        table = deck.subList(0, Math.min(env.config.tableSize, deck.size()));
+    }
+
+    @Benchmark
+    public List<int[]> deckFirst() {
+        return util.findSets(deck, 1);
+    }
+
+    @Benchmark
+    public List<int[]> deckAll() {
+        return util.findSets(deck, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<int[]> tableAll() {
+        return util.findSets(table, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,65 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the sequential and the fork/join SetFinder::findSets on the full deck of a generalized game, both for all
+ * sets and for the count = 1 search of Dealer::shouldFinish on a deck without sets left (the worst case).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelFindSetsBenchmark {
+
+    @Param({"3x6", "5x3", "4x4"})
+    public String deck;
+
+    private SetFinder finder;
+    private List<Integer> cards;
+    private List<Integer> capSet;
+
+    @Setup
+    public void setUp() {
+        String[] sizes = deck.split("x");
+        Env env = BenchmarkEnv.create(BenchmarkEnv.defaults(Integer.parseInt(sizes[0]), Integer.parseInt(sizes[1]), "3x4", 2));
+        finder = new SetFinder(env.config, new SetRule(env.config));
+        cards = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(cards, new Random(42));
+
+        // greedily drop cards until no set is left
+        capSet = new ArrayList<>(cards);
+        for (List<int[]> sets = finder.findSets(capSet, 1, false); !sets.isEmpty(); sets = finder.findSets(capSet, 1, false))
+            capSet.remove(Integer.valueOf(sets.get(0)[0]));
+    }
+
+    @Benchmark
+    public List<int[]> allSequential() {
+        return finder.findSets(cards, Integer.MAX_VALUE, false);
+    }
+
+    @Benchmark
+    public List<int[]> allParallel() {
+        return finder.findSets(cards, Integer.MAX_VALUE, true);
+    }
+
+    @Benchmark
+    public List<int[]> noneLeftSequential() {
+        return finder.findSets(capSet, 1, false);
+    }
+
+    @Benchmark
+    public List<int[]> noneLeftParallel() {
+        return finder.findSets(capSet, 1, true);
+    }
+}
@@ -0,0 +1,73 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures Util::testSet and Util::findSets under each set rule (see SetRule) on the classic deck. "mixed" gives each
+ * feature a different rule; "any" ignores one feature, so its sets cannot be completed and are found by testing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetRuleBenchmark {
+
+    private static final int CARD_ARRAYS = 1024;
+
+    @Param({"classic", "sum", "same", "different", "mixed", "any"})
+    public String rule;
+
+    private Util util;
+    private int[][] cards;
+    private int next;
+    private List<Integer> table;
+
+    @Setup
+    public void setUp() {
+        Properties properties = BenchmarkEnv.defaults(3, 4, "3x4", 2);
+        switch (rule) {
+            case "mixed":
+                properties.put("FeatureRule1", "same");
+                properties.put("FeatureRule2", "different");
+                properties.put("FeatureRule3", "sum");
+                properties.put("FeatureRule4", "classic");
+                break;
+            case "any":
+                properties.put("FeatureRule1", "any");
+                break;
+            default:
+                properties.put("SetRule", rule);
+        }
+        Env env = BenchmarkEnv.create(properties);
+        util = env.util;
+
+        Random random = new Random(42);
+        cards = new int[CARD_ARRAYS][];
+        for (int i = 0; i < CARD_ARRAYS; ++i)
+            cards[i] = random.ints(3, 0, env.config.deckSize).toArray();
+        List<Integer> deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, random);
+        table = deck.subList(0, env.config.tableSize);
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        next = (next + 1) & (CARD_ARRAYS - 1);
+        return util.testSet(cards[next]);
+    }
+
+    @Benchmark
+    public List<int[]> findSetsOnTable() {
+        return util.findSets(table, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,65 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the packed feature testSet against the original feature matrix implementation.
+ * Half of the tested card arrays are legal sets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestSetBenchmark {
+
+    private static final int CARD_ARRAYS = 1024;
+
+    @Param({"3"})
+    public int featureSize;
+
+    @Param({"4"})
+    public int featureCount;
+
+    private UtilImpl util;
+    private int[][] cards;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Env env = BenchmarkEnv.create(BenchmarkEnv.defaults(featureSize, featureCount, "3x4", 2));
+        Config config = env.config;
+        util = (UtilImpl) env.util;
+
+        Random random = new Random(42);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        List<int[]> sets = util.findSets(deck, CARD_ARRAYS);
+        cards = new int[CARD_ARRAYS][];
+        for (int i = 0; i < CARD_ARRAYS; ++i)
+            cards[i] = i % 2 == 0 && !sets.isEmpty()
+                    ? sets.get(random.nextInt(sets.size()))
+                    : random.ints(config.featureSize, 0, config.deckSize).toArray();
+    }
+
+    private int[] nextCards() {
+        next = (next + 1) & (CARD_ARRAYS - 1);
+        return cards[next];
+    }
+
+    @Benchmark
+    public boolean packed() {
+        return util.testSet(nextCards());
+    }
+
+    @Benchmark
+    public boolean featureMatrix() {
+        return util.testSetByFeatures(nextCards());
+    }
+}
@@ -0,0 +1,66 @@
+package bguspl.set.ex;
+
+import bguspl.set.BenchmarkEnv;
+import bguspl.set.Env;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a complete headless game: the dealer and its computer players play until no sets are left.
+ * There is no table delay and no freezing, so the game runs as fast as the dealer and the players allow.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DealerBenchmark {
+
+    /**
+     * A game that takes longer than this is stopped (and measured as is).
+     */
+    private static final long GAME_TIMEOUT_MILLIS = 60000;
+
+    @Param({"3"})
+    public int featureSize;
+
+    @Param({"3"})
+    public int featureCount;
+
+    @Param({"3x4"})
+    public String grid;
+
+    @Param({"2"})
+    public int players;
+
+    private Dealer dealer;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        Properties properties = BenchmarkEnv.defaults(featureSize, featureCount, grid, players);
+        properties.put("TurnTimeoutSeconds", "0.5");
+        properties.put("TurnTimeoutWarningSeconds", "0");
+        Env env = BenchmarkEnv.create(properties);
+
+        Table table = new Table(env);
+        Player[] gamePlayers = new Player[env.config.players];
+        dealer = new Dealer(env, table, gamePlayers);
+        for (int i = 0; i < gamePlayers.length; i++)
+            gamePlayers[i] = new Player(env, dealer, table, i, false);
+    }
+
+    @Benchmark
+    public Dealer game() throws InterruptedException {
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        dealerThread.join(GAME_TIMEOUT_MILLIS);
+        if (dealerThread.isAlive()) {
+            dealer.terminate();
+            dealerThread.join();
+        }
+        return dealer;
+    }
+}
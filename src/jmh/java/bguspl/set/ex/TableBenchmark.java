@@ -0,0 +1,68 @@
+package bguspl.set.ex;
+
+import bguspl.set.BenchmarkEnv;
+import bguspl.set.Env;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Table operations performed for every card dealt and every key pressed (with no table delay).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+
+    @Param({"3"})
+    public int featureSize;
+
+    @Param({"4"})
+    public int featureCount;
+
+    @Param({"3x4"})
+    public String grid;
+
+    @Param({"2"})
+    public int players;
+
+    private Table table;
+    private int tableSize;
+    private int slot;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Env env = BenchmarkEnv.create(BenchmarkEnv.defaults(featureSize, featureCount, grid, players));
+        table = new Table(env);
+        tableSize = env.config.tableSize;
+        for (int i = 0; i < Math.min(tableSize, env.config.deckSize); ++i)
+            table.placeCard(i, i);
+
+        // the last player holds a complete claim for getSetAsCards
+        for (int i = 0; i < 3; ++i)
+            table.placeToken(players - 1, i);
+    }
+
+    @Benchmark
+    public int placeAndRemoveCard() {
+        slot = (slot + 1) % tableSize;
+        int removed = table.removeCard(slot);
+        table.placeCard(removed, slot);
+        return removed;
+    }
+
+    @Benchmark
+    public boolean placeAndRemoveToken() {
+        slot = (slot + 1) % tableSize;
+        table.placeToken(0, slot);
+        return table.removeToken(0, slot);
+    }
+
+    @Benchmark
+    public int[] getSetAsCards() {
+        return table.getSetAsCards(players - 1);
+    }
+}
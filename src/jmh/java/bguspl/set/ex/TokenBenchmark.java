@@ -0,0 +1,182 @@
+package bguspl.set.ex;
+
+import bguspl.set.BenchmarkEnv;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compares the bitmask token storage of Table against the per-player token lists it replaced (kept here as
+ * ListTokens, with the same slot locking and user interface calls).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenBenchmark {
+
+    @Param({"3x4"})
+    public String grid;
+
+    @Param({"2", "8"})
+    public int players;
+
+    private Table table;
+    private ListTokens lists;
+    private int tableSize;
+    private int slot;
+
+    /**
+     * The token storage of Table before it was turned into bitmasks.
+     */
+    static class ListTokens {
+
+        private final UserInterface ui;
+        private final List<Integer>[] playerTokens;
+        private final ReentrantLock[] slotLocks;
+
+        @SuppressWarnings("unchecked")
+        ListTokens(UserInterface ui, int players, int tableSize) {
+            this.ui = ui;
+            playerTokens = new ArrayList[players];
+            for (int i = 0; i < players; i++)
+                playerTokens[i] = new ArrayList<>(3);
+            slotLocks = new ReentrantLock[tableSize];
+            for (int i = 0; i < tableSize; i++)
+                slotLocks[i] = new ReentrantLock();
+        }
+
+        void placeToken(int player, int slot) {
+            slotLocks[slot].lock();
+            try {
+                List<Integer> tokens = playerTokens[player];
+                synchronized (tokens) {
+                    if (tokens.size() < 3) {
+                        tokens.add(slot);
+                        ui.placeToken(player, slot);
+                    }
+                }
+            } finally {
+                slotLocks[slot].unlock();
+            }
+        }
+
+        boolean removeToken(int player, Integer slot) {
+            slotLocks[slot].lock();
+            try {
+                List<Integer> tokens = playerTokens[player];
+                synchronized (tokens) {
+                    boolean removed = tokens.remove(slot);
+                    if (removed) ui.removeToken(player, slot);
+                    return removed;
+                }
+            } finally {
+                slotLocks[slot].unlock();
+            }
+        }
+
+        void removeTokensFromSlot(Integer slot) {
+            slotLocks[slot].lock();
+            try {
+                for (List<Integer> list : playerTokens)
+                    synchronized (list) {
+                        list.remove(slot);
+                    }
+                ui.removeTokens(slot);
+            } finally {
+                slotLocks[slot].unlock();
+            }
+        }
+
+        boolean checkToken(int player, int slot) {
+            List<Integer> tokens = playerTokens[player];
+            synchronized (tokens) {
+                return tokens.contains(slot);
+            }
+        }
+
+        int tokenCount(int player) {
+            List<Integer> tokens = playerTokens[player];
+            synchronized (tokens) {
+                return tokens.size();
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Env env = BenchmarkEnv.create(BenchmarkEnv.defaults(3, 4, grid, players));
+        tableSize = env.config.tableSize;
+        table = new Table(env);
+        lists = new ListTokens(env.ui, players, tableSize);
+        for (int i = 0; i < tableSize; ++i)
+            table.placeCard(i, i);
+
+        // every player but the first holds two tokens
+        for (int player = 1; player < players; ++player)
+            for (int i = 0; i < 2; ++i) {
+                table.placeToken(player, (player + i) % tableSize);
+                lists.placeToken(player, (player + i) % tableSize);
+            }
+    }
+
+    private int nextSlot() {
+        slot = (slot + 1) % tableSize;
+        return slot;
+    }
+
+    @Benchmark
+    public boolean bitmaskPlaceAndRemove() {
+        int slot = nextSlot();
+        table.placeToken(0, slot);
+        return table.removeToken(0, slot);
+    }
+
+    @Benchmark
+    public boolean listPlaceAndRemove() {
+        int slot = nextSlot();
+        lists.placeToken(0, slot);
+        return lists.removeToken(0, slot);
+    }
+
+    @Benchmark
+    public boolean bitmaskCheck() {
+        return table.checkToken(players - 1, nextSlot());
+    }
+
+    @Benchmark
+    public boolean listCheck() {
+        return lists.checkToken(players - 1, nextSlot());
+    }
+
+    @Benchmark
+    public int bitmaskCount() {
+        return table.tokenCount(players - 1);
+    }
+
+    @Benchmark
+    public int listCount() {
+        return lists.tokenCount(players - 1);
+    }
+
+    @Benchmark
+    public void bitmaskClearSlot() {
+        int slot = nextSlot();
+        table.placeToken(0, slot);
+        table.removeTokensFromSlot(slot);
+    }
+
+    @Benchmark
+    public void listClearSlot() {
+        int slot = nextSlot();
+        lists.placeToken(0, slot);
+        lists.removeTokensFromSlot(slot);
+    }
+}
@@ -0,0 +1,230 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that does not make the logging threads wait for formatting or for the disk.
+ * The records are put in a bounded lock-free ring buffer and a background writer thread takes them out, formats them
+ * and writes them in large batches, flushing the output whenever it catches up. When the buffer is full the record is
+ * handled according to the overflow policy (see OverflowPolicy).
+ *
+ * The ring buffer is a multi producer, single consumer queue: every slot has a sequence number telling whether it is
+ * free for the producer of a given position or holds the record of a given position for the consumer.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * What to do with a record when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** wait until the writer makes room for it. */
+        BLOCK,
+        /** drop it. */
+        DROP,
+        /** drop it, and log the number of records dropped. */
+        COUNT
+    }
+
+    /**
+     * The maximal number of records written at once, and the time a blocked logging thread waits between attempts.
+     */
+    private static final int MAX_BATCH = 1024;
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    private final AtomicReferenceArray<LogRecord> records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    /**
+     * The next position to be claimed by a producer, and the next position to be taken by the writer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    /**
+     * The number of records written and flushed (all the positions before it), and the number of records dropped
+     * since the writer last reported it (see OverflowPolicy.COUNT).
+     */
+    private volatile long written;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile boolean closed;
+    private volatile boolean writerParked;
+
+    private final Writer out;
+    private final Thread writer;
+
+    /**
+     * @param out            - the stream to write the formatted records to.
+     * @param capacity       - the number of records the buffer holds (rounded up to a power of two).
+     * @param overflowPolicy - what to do with a record when the buffer is full.
+     */
+    public AsyncLogHandler(OutputStream out, int capacity, OverflowPolicy overflowPolicy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        records = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+        mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+
+        writer = new Thread(this::writeRecords, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record))
+            return;
+        while (!offer(record)) {
+            OverflowPolicy policy = overflowPolicy;
+            if (policy == OverflowPolicy.BLOCK && !closed) {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                continue;
+            }
+            if (policy == OverflowPolicy.COUNT)
+                dropped.incrementAndGet();
+            return;
+        }
+        if (writerParked)
+            LockSupport.unpark(writer);
+    }
+
+    /**
+     * Puts a record in the buffer (any thread).
+     *
+     * @return - false iff the buffer is full.
+     */
+    private boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records.lazySet(index, record);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the next record out of the buffer (writer thread only).
+     *
+     * @return - the record, or null if there is none (yet).
+     */
+    private LogRecord poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1)
+            return null;
+        LogRecord record = records.get(index);
+        records.lazySet(index, null);
+        sequences.set(index, head + mask + 1);
+        ++head;
+        return record;
+    }
+
+    /**
+     * The main loop of the writer thread.
+     */
+    private void writeRecords() {
+        StringBuilder batch = new StringBuilder(1 << 16);
+        while (true) {
+            int count = 0;
+            batch.setLength(0);
+            long drops = dropped.getAndSet(0);
+            if (drops > 0)
+                batch.append(format(new LogRecord(Level.WARNING, drops + " log records dropped (log buffer full).")));
+            for (LogRecord record = poll(); record != null; record = count < MAX_BATCH ? poll() : null) {
+                batch.append(format(record));
+                ++count;
+            }
+
+            try {
+                if (batch.length() > 0)
+                    out.write(batch.toString());
+                if (count < MAX_BATCH) {
+                    // caught up: make the records visible and wait for more
+                    out.flush();
+                    written = head;
+                    if (closed)
+                        return;
+                    writerParked = true;
+                    if (tail.get() == head && !closed)
+                        LockSupport.park(this);
+                    writerParked = false;
+                }
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.WRITE_FAILURE);
+                if (closed)
+                    return;
+            }
+        }
+    }
+
+    private String format(LogRecord record) {
+        try {
+            return getFormatter() != null ? getFormatter().format(record) : record.getMessage() + System.lineSeparator();
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return "";
+        }
+    }
+
+    /**
+     * Waits until all the records published so far are written and flushed.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (written < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Flushes the records published so far, stops the writer thread and closes the stream.
+     */
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+}
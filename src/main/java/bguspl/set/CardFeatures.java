@@ -0,0 +1,129 @@
+package bguspl.set;
+
+/**
+ * A cache of the features of every card in the deck, computed once per configuration.
+ * Besides the plain feature values, the features of each card are packed into a single long word with one lane of
+ * featureSize bits per feature, in which only the bit of the feature's value is set. OR-ing the words of some cards
+ * gives, per lane, the values these cards have in that feature, so the set rule is checked on all features at once
+ * with a few word operations and without allocating.
+ */
+class CardFeatures {
+
+    private final int featureSize;
+    private final int featureCount;
+
+    /**
+     * The features of each card (see Util::cardToFeatures).
+     */
+    private final int[][] features;
+
+    /**
+     * The packed features of each card (null if featureSize * featureCount does not fit a long).
+     */
+    private final long[] words;
+
+    /**
+     * The lowest bit, the highest bit, the lower bits (all but the highest) and all bits of every lane.
+     */
+    private final long lowBits;
+    private final long highBits;
+    private final long lowerBits;
+    private final long laneBits;
+
+    CardFeatures(Config config) {
+        featureSize = config.featureSize;
+        featureCount = config.featureCount;
+
+        features = new int[config.deckSize][featureCount];
+        for (int card = 0; card < config.deckSize; ++card)
+            for (int i = featureCount - 1, id = card; i >= 0; --i) {
+                features[card][i] = id % featureSize;
+                id /= featureSize;
+            }
+
+        if (featureSize >= 2 && featureSize * featureCount <= Long.SIZE) {
+            long low = 0, high = 0;
+            for (int i = 0; i < featureCount; ++i) {
+                low |= 1L << (i * featureSize);
+                high |= 1L << (i * featureSize + featureSize - 1);
+            }
+            lowBits = low;
+            highBits = high;
+            lowerBits = high - low;
+            laneBits = high | (high - low);
+
+            words = new long[config.deckSize];
+            for (int card = 0; card < config.deckSize; ++card)
+                for (int i = 0; i < featureCount; ++i)
+                    words[card] |= 1L << (i * featureSize + features[card][i]);
+        } else {
+            lowBits = highBits = lowerBits = laneBits = 0;
+            words = null;
+        }
+    }
+
+    /**
+     * @return - the (shared, do not modify) features of the card.
+     */
+    int[] of(int card) {
+        return features[card];
+    }
+
+    /**
+     * @return - the value of the given feature of the card.
+     */
+    int feature(int card, int feature) {
+        return features[card][feature];
+    }
+
+    /**
+     * Checks if an array of cards forms a legal set (see Util::testSet).
+     */
+    boolean testSet(int[] cards) {
+        if (cards.length < 2) return featureCount == 0; // a single card is both all same and all different
+        if (words == null) return testSetByFeatures(cards);
+
+        long values = 0;
+        for (int card : cards)
+            values |= words[card];
+
+        if (cards.length == featureSize) {
+            // a lane is all same iff it has a single bit set and all different iff it has all of its bits set
+            long notSame = values & (values - lowBits); // no borrows, each lane has at least one bit set
+            long notDifferent = values ^ laneBits;
+            return (nonZeroLanes(notSame) & nonZeroLanes(notDifferent)) == 0;
+        }
+
+        // all different is a matter of counting the values when the set size differs from the feature size
+        long lane = -1L >>> (Long.SIZE - featureSize);
+        for (int i = 0; i < featureCount; ++i, values >>>= featureSize) {
+            int count = Long.bitCount(values & lane);
+            if (count != 1 && count != cards.length) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return - a word with the highest bit of every lane of v that has any of its bits set.
+     */
+    private long nonZeroLanes(long v) {
+        return (((v & lowerBits) + lowerBits) | v) & highBits;
+    }
+
+    private boolean testSetByFeatures(int[] cards) {
+        for (int i = 0; i < featureCount; ++i) {
+            boolean sameSame = true, butDifferent = true;
+            for (int j = 1; j < cards.length && sameSame; ++j)
+                if (features[cards[0]][i] != features[cards[j]][i])
+                    sameSame = false;
+            for (int j = 0; j < cards.length && butDifferent; ++j)
+                for (int k = j + 1; k < cards.length; ++k)
+                    if (features[cards[j]][i] == features[cards[k]][i]) {
+                        butDifferent = false;
+                        break;
+                    }
+            if (sameSame == butDifferent) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package bguspl.set;
+
+import java.util.concurrent.locks.Condition;
+
+/**
+ * The source of time of the game entities.
+ * The dealer, the table and the players read the time and pause through this interface rather than through the
+ * system, so a game can either be played in real time or simulated on a virtual clock.
+ */
+public interface Clock {
+
+    /**
+     * @return - the current time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Pauses the calling thread for the specified number of milliseconds.
+     *
+     * @param millis - the number of milliseconds to pause for.
+     * @throws InterruptedException - if the thread is interrupted.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Waits on a condition until it is signalled or the specified number of milliseconds have passed.
+     * The calling thread must hold the lock of the condition.
+     *
+     * @param condition - the condition to wait on.
+     * @param millis  - the maximum number of milliseconds to wait (must be positive).
+     * @throws InterruptedException - if the thread is interrupted.
+     */
+    void await(Condition condition, long millis) throws InterruptedException;
+}
@@ -15,6 +15,11 @@ import java.util.logging.Logger;
  */
 public class Config {
 
+    /**
+     * What the logger does with a record when its buffer is full (see AsyncLogHandler)
+     */
+    public final AsyncLogHandler.OverflowPolicy logOverflowPolicy;
+
     /**
      * Random spin cycles for Config::randomSpin (for debugging / testing)
      */
@@ -36,6 +41,22 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The seed of the random generator that shuffles the deck (0 for a different seed in every game)
+     */
+    public final long shuffleSeed;
+
+    /**
+     * The number of cards in a set (featureSize by default)
+     */
+    public final int setSize;
+
+    /**
+     * The rule of each feature of a set (see SetRule.FeatureRule): SetRule for all features, unless overridden by
+     * FeatureRule1, FeatureRule2 etc.
+     */
+    public final String[] featureRules;
+
     /**
      * The number of human players in the game.
      */
@@ -51,6 +72,21 @@ public class Config {
      */
     public final int players;
 
+    /**
+     * The strategy of the computer players ("random" or "solver", see bguspl.set.ex.ComputerStrategy)
+     */
+    public final String computerStrategy;
+
+    /**
+     * The number of milliseconds a solver computer player takes to react to a set on the table
+     */
+    public final long computerReactionMillis;
+
+    /**
+     * The probability that a solver computer player claims the set it found (rather than making a mistake)
+     */
+    public final double computerAccuracy;
+
     /**
      * Whether to print out hints to the console or not
      */
@@ -81,11 +117,111 @@ public class Config {
      */
     public final long tableDelayMillis;
 
+    /**
+     * The number of milliseconds to delay before placing or removing a batch of cards (TableDelaySeconds by default)
+     */
+    public final long tableBatchDelayMillis;
+
     /**
      * The number of milliseconds to pause at the end of the game before closing
      */
     public final long endGamePauseMillies;
 
+    /**
+     * Whether the dealer polls every 50 milliseconds instead of sleeping until its next event (for comparison)
+     */
+    public final boolean pollingDealer;
+
+    /**
+     * Whether the players (and the computer players' input) run on virtual threads rather than platform threads (see
+     * GameThreads)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * Whether to measure the latencies of the stages of the key presses and claims (see LatencyMetrics)
+     */
+    public final boolean latencyMetrics;
+
+    /**
+     * The number of headless games to simulate on a virtual clock (0 to play a single game in real time)
+     */
+    public final int simulationGames;
+
+    /**
+     * The directory to write the journals of the games to (see FileGameJournal), empty for no journals
+     */
+    public final String journalDirectory;
+
+    /**
+     * The journal of a recorded game to replay and verify (see bguspl.set.ex.Replay), empty to play a game
+     */
+    public final String replayJournal;
+
+    /**
+     * The file to checkpoint the game to and resume it from after a restart (see bguspl.set.ex.GameSnapshot), empty
+     * for none
+     */
+    public final String snapshotFile;
+
+    /**
+     * The total number of headless games of computer players to host in real time (see GameHost, at most hostMaxGames
+     * of them at once), 0 for none
+     */
+    public final int hostedGames;
+
+    /**
+     * The number of threads the dealers of the hosted games share
+     */
+    public final int hostThreads;
+
+    /**
+     * The maximum number of games (and of players in all of them) the host runs at once (further games are rejected)
+     */
+    public final int hostMaxGames;
+    public final int hostMaxPlayers;
+
+    /**
+     * The budget of each hosted game: the wall-clock time and the CPU time of its dealer (in milliseconds, 0 for none)
+     */
+    public final long gameBudgetMillis;
+    public final long gameBudgetCpuMillis;
+
+    /**
+     * The address and port to serve the game to remote players on (see NetworkUserInterface), port 0 for none
+     */
+    public final String networkAddress;
+    public final int networkPort;
+
+    /**
+     * The number of clients the load generator connects to the game (see LoadGenerator), and how long it runs (in
+     * milliseconds)
+     */
+    public final int loadConnections;
+    public final long loadDurationMillis;
+
+    /**
+     * The median reaction time of the synthetic players of the load generator to a change of the table, and the
+     * spread of their reaction times (the standard deviation of its logarithm)
+     */
+    public final long loadReactionMillis;
+    public final double loadReactionSpread;
+
+    /**
+     * The median time between the key presses of a synthetic player (in milliseconds)
+     */
+    public final long loadKeyMillis;
+
+    /**
+     * The probability of a synthetic player to press a wrong key
+     */
+    public final double loadErrorRate;
+
+    /**
+     * The file the load generator writes its latency report to
+     */
+    public final String loadReportFile;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -155,7 +291,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -186,6 +322,8 @@ public class Config {
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        logOverflowPolicy = AsyncLogHandler.OverflowPolicy.valueOf(properties.getProperty("LogOverflowPolicy", "BLOCK").trim().toUpperCase());
+        Main.setLoggerOverflowPolicy(logger, logOverflowPolicy);
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
@@ -197,11 +335,19 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        shuffleSeed = Long.parseLong(properties.getProperty("ShuffleSeed", "0"));
+        setSize = Integer.parseInt(properties.getProperty("SetSize", Integer.toString(featureSize)));
+        String setRule = properties.getProperty("SetRule", "classic").trim().toLowerCase();
+        featureRules = new String[featureCount];
+        Arrays.setAll(featureRules, i -> properties.getProperty("FeatureRule" + (i + 1), setRule).trim().toLowerCase());
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
+        computerStrategy = properties.getProperty("ComputerStrategy", "random").trim().toLowerCase();
+        computerReactionMillis = (long) (Double.parseDouble(properties.getProperty("ComputerReactionSeconds", "1")) * 1000.0);
+        computerAccuracy = Double.parseDouble(properties.getProperty("ComputerAccuracy", "1"));
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
@@ -209,7 +355,30 @@ public class Config {
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        tableBatchDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableBatchDelaySeconds", Double.toString(tableDelayMillis / 1000.0))) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        pollingDealer = Boolean.parseBoolean(properties.getProperty("PollingDealer", "False"));
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
+        latencyMetrics = Boolean.parseBoolean(properties.getProperty("LatencyMetrics", "False"));
+        simulationGames = Integer.parseInt(properties.getProperty("SimulationGames", "0"));
+        journalDirectory = properties.getProperty("JournalDirectory", "").trim();
+        replayJournal = properties.getProperty("ReplayJournal", "").trim();
+        snapshotFile = properties.getProperty("SnapshotFile", "").trim();
+        hostedGames = Integer.parseInt(properties.getProperty("HostedGames", "0"));
+        hostThreads = Integer.parseInt(properties.getProperty("HostThreads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        hostMaxGames = Integer.parseInt(properties.getProperty("HostMaxGames", "256"));
+        hostMaxPlayers = Integer.parseInt(properties.getProperty("HostMaxPlayers", "2048"));
+        gameBudgetMillis = (long) (Double.parseDouble(properties.getProperty("GameBudgetSeconds", "0")) * 1000.0);
+        gameBudgetCpuMillis = (long) (Double.parseDouble(properties.getProperty("GameBudgetCpuSeconds", "0")) * 1000.0);
+        networkAddress = properties.getProperty("NetworkAddress", "localhost").trim();
+        networkPort = Integer.parseInt(properties.getProperty("NetworkPort", "0"));
+        loadConnections = Integer.parseInt(properties.getProperty("LoadConnections", "100"));
+        loadDurationMillis = (long) (Double.parseDouble(properties.getProperty("LoadDurationSeconds", "30")) * 1000.0);
+        loadReactionMillis = (long) (Double.parseDouble(properties.getProperty("LoadReactionSeconds", "1.5")) * 1000.0);
+        loadReactionSpread = Double.parseDouble(properties.getProperty("LoadReactionSpread", "0.5"));
+        loadKeyMillis = (long) (Double.parseDouble(properties.getProperty("LoadKeySeconds", "0.25")) * 1000.0);
+        loadErrorRate = Double.parseDouble(properties.getProperty("LoadErrorRate", "0.05"));
+        loadReportFile = properties.getProperty("LoadReportFile", "load-report.hgrm").trim();
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -8,11 +8,25 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Clock clock;
+    public final GameJournal journal;
+    public final LatencyMetrics metrics;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, new SystemClock());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock) {
+        this(logger, config, ui, util, clock, GameJournal.NONE);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock, GameJournal journal) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.clock = clock;
+        this.journal = journal;
+        metrics = new LatencyMetrics(config.latencyMetrics);
     }
 }
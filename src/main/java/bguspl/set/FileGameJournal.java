@@ -0,0 +1,257 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A game journal in a binary file of fixed-width records (see GameJournalReader for reading it).
+ * The records are put in a large direct buffer, so recording an event is a few memory writes under a short lock, which
+ * also orders the records by their timestamps. A full buffer is handed to a background writer thread and replaced by a
+ * free one, so the recording threads (the players and the dealer, which record while holding the slot locks of the
+ * table) never wait for the disk. They only wait for a free buffer if the writer falls MAX_BUFFERS buffers behind.
+ *
+ * The file starts with a HEADER_SIZE bytes header describing the game, followed by RECORD_SIZE bytes records, all
+ * little endian:
+ * header - magic (int), version (short), record size (short), shuffle seed (long), players, table size, deck size,
+ *          set size (ints), start time (long, milliseconds since the epoch), zero padding.
+ * record - time since the journal was opened (long, nanoseconds, monotonic), game time (long, milliseconds, see Clock),
+ *          event code (byte), zero (byte), player (short), slot, card, value (ints).
+ */
+public class FileGameJournal implements GameJournal {
+
+    static final int MAGIC = 0x4A544553; // "SETJ"
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+
+    /**
+     * The default size of a buffer (in bytes, a multiple of RECORD_SIZE), and the largest number of buffers.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_BUFFERS = 4;
+
+    /**
+     * Handed to the writer thread to stop it.
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final Logger logger;
+    private final Clock clock;
+    private final FileChannel channel;
+    private final int bufferSize;
+    private final long startNanos;
+
+    /**
+     * The lock of the journal, and the condition signalled whenever the writer is done with a buffer.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition bufferWritten = lock.newCondition();
+
+    /**
+     * The buffer being filled, the buffers free to fill next and the number of buffers allocated so far.
+     */
+    private ByteBuffer buffer;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private int buffers;
+
+    /**
+     * The full buffers, in the order they were filled, and the number of buffers handed to the writer thread and
+     * written by it so far.
+     */
+    private final BlockingQueue<ByteBuffer> full = new LinkedBlockingQueue<>();
+    private long handed;
+    private long written;
+
+    private final Thread writer;
+
+    /**
+     * True iff the journal was closed (records are then ignored), and true iff it failed to write (records are then
+     * ignored too).
+     */
+    private boolean closed;
+    private volatile boolean failed;
+
+    /**
+     * Creates (or truncates) the journal file and writes its header.
+     *
+     * @param path        - the journal file.
+     * @param logger      - the logger to report write failures to.
+     * @param config      - the configuration of the game.
+     * @param clock       - the clock of the game.
+     * @param shuffleSeed - the seed of the random generator that shuffles the deck (see Dealer).
+     * @throws IOException - if the file cannot be created.
+     */
+    public FileGameJournal(Path path, Logger logger, Config config, Clock clock, long shuffleSeed) throws IOException {
+        this(path, logger, config, clock, shuffleSeed, BUFFER_SIZE);
+    }
+
+    FileGameJournal(Path path, Logger logger, Config config, Clock clock, long shuffleSeed, int bufferSize) throws IOException {
+        this.logger = logger;
+        this.clock = clock;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.bufferSize = Math.max(1, bufferSize / RECORD_SIZE) * RECORD_SIZE;
+        buffer = allocate();
+        startNanos = System.nanoTime();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE).putLong(shuffleSeed)
+                .putInt(config.players).putInt(config.tableSize).putInt(config.deckSize).putInt(config.setSize)
+                .putLong(System.currentTimeMillis());
+        header.clear();
+        try {
+            while (header.hasRemaining())
+                channel.write(header);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        writer = new Thread(this::writeBuffers, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens the journal of a game in the journal directory (see Config::journalDirectory).
+     *
+     * @param name - the name of the journal (the file is name.journal).
+     * @return     - the journal, or GameJournal.NONE if journals are disabled or the file cannot be created.
+     */
+    public static GameJournal open(String name, Logger logger, Config config, Clock clock, long shuffleSeed) {
+        if (config.journalDirectory.isEmpty())
+            return GameJournal.NONE;
+        try {
+            Path directory = Paths.get(config.journalDirectory);
+            Files.createDirectories(directory);
+            return new FileGameJournal(directory.resolve(name + ".journal"), logger, config, clock, shuffleSeed);
+        } catch (IOException | RuntimeException e) {
+            logger.severe("cannot create the game journal " + name + ": " + e);
+            return GameJournal.NONE;
+        }
+    }
+
+    @Override
+    public void record(Event event, int player, int slot, int card, int value) {
+        lock.lock();
+        try {
+            if (closed || failed)
+                return;
+            while (!buffer.hasRemaining())
+                handOff();
+            buffer.putLong(System.nanoTime() - startNanos)
+                    .putLong(clock.currentTimeMillis())
+                    .put((byte) event.ordinal())
+                    .put((byte) 0)
+                    .putShort((short) player)
+                    .putInt(slot)
+                    .putInt(card)
+                    .putInt(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands the buffer being filled to the writer thread and takes a free one instead (with the lock held), waiting
+     * for the writer to free one if MAX_BUFFERS are allocated and none is free.
+     */
+    private void handOff() {
+        while (free.isEmpty() && buffers >= MAX_BUFFERS && !failed)
+            bufferWritten.awaitUninterruptibly();
+        full.add(buffer);
+        ++handed;
+        buffer = free.isEmpty() ? allocate() : free.poll();
+    }
+
+    private ByteBuffer allocate() {
+        ++buffers;
+        return ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * The main loop of the writer thread: writes the full buffers to the file in order and frees them.
+     */
+    private void writeBuffers() {
+        while (true) {
+            ByteBuffer next;
+            try {
+                next = full.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (next == END)
+                return;
+
+            next.flip();
+            try {
+                while (next.hasRemaining() && !failed)
+                    channel.write(next);
+            } catch (IOException e) {
+                logger.severe("cannot write the game journal, no more events will be recorded: " + e);
+                failed = true;
+            }
+            next.clear();
+
+            lock.lock();
+            try {
+                free.add(next);
+                ++written;
+                bufferWritten.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the records recorded so far to the file, waiting for the writer thread to write them.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            if (buffer.position() > 0 && !failed)
+                handOff();
+            while (written < handed)
+                bufferWritten.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        full.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.severe("cannot close the game journal: " + e);
+        }
+    }
+}
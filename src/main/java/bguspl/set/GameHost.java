@@ -0,0 +1,300 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.ScheduledDealer;
+import bguspl.set.ex.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent headless games of computer players at once, in real time, in a single process (see
+ * Config::hostedGames). Every game has its own configuration, logger, utilities, journal and shuffle seed, and its
+ * dealer runs on a pool of threads shared by all the games (see ScheduledDealer) rather than on a thread of its own.
+ * The players of a game still have threads of their own (see Config::virtualThreads for making them cheap).
+ *
+ * The host admits a game only while it runs fewer than Config::hostMaxGames games, with at most Config::hostMaxPlayers
+ * players in all of them, and terminates a game once it goes over its budget (see Config::gameBudgetMillis).
+ */
+public class GameHost implements AutoCloseable {
+
+    /**
+     * How long closing the host waits for the games it terminates to end (in milliseconds).
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+
+    private final Logger logger;
+
+    /**
+     * The configuration of the games (unless a game overrides it), and of the host.
+     */
+    private final Properties properties;
+    private final Config config;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * The threads that end the games (see ScheduledDealer), which wait for the players of a game to stop.
+     */
+    private final ExecutorService finisher;
+
+    /**
+     * The permits for the games and for the players of the games the host runs at once.
+     */
+    private final Semaphore gamePermits;
+    private final Semaphore playerPermits;
+
+    /**
+     * The games running, and the largest number of games that ran at once.
+     */
+    private final Map<ScheduledDealer, CompletableFuture<ScheduledDealer>> running = new ConcurrentHashMap<>();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    /**
+     * The random generator of the shuffle seeds of the games (guarded by itself).
+     */
+    private final SplittableRandom seeds;
+
+    /**
+     * The name of the host (of the journals of its games, see Config::journalDirectory).
+     */
+    private final String name;
+
+    /**
+     * @param logger     - the logger of the host (the logger of each game logs through it).
+     * @param properties - the configuration of the games, and of the host.
+     */
+    public GameHost(Logger logger, Properties properties) {
+        this.logger = logger;
+        this.properties = properties;
+        config = new Config(logger, properties);
+        AtomicInteger threads = new AtomicInteger();
+        scheduler = new ScheduledThreadPoolExecutor(Math.max(1, config.hostThreads),
+                task -> new Thread(task, "host-" + threads.getAndIncrement()));
+        // a claim cancels the dealer's next step and schedules another one right away
+        scheduler.setRemoveOnCancelPolicy(true);
+        AtomicInteger finishers = new AtomicInteger();
+        finisher = Executors.newCachedThreadPool(task -> new Thread(task, "host-finish-" + finishers.getAndIncrement()));
+        gamePermits = new Semaphore(config.hostMaxGames);
+        playerPermits = new Semaphore(config.hostMaxPlayers);
+        // with a configured shuffle seed the deals of all the games (though not the timing of the players) are reproducible
+        seeds = config.shuffleSeed != 0 ? new SplittableRandom(config.shuffleSeed) : new SplittableRandom();
+        name = Main.LOG_DATE_FORMAT.format(new Date());
+    }
+
+    /**
+     * The result of a hosted game.
+     */
+    public static final class GameResult {
+
+        public final String name;
+
+        /**
+         * The final score of each player.
+         */
+        public final int[] scores;
+
+        /**
+         * True iff the game went over its budget (and was terminated).
+         */
+        public final boolean overBudget;
+
+        /**
+         * The wall-clock time the game took, and the CPU time its dealer took (in milliseconds).
+         */
+        public final long millis;
+        public final long dealerCpuMillis;
+
+        GameResult(String name, int[] scores, boolean overBudget, long millis, long dealerCpuMillis) {
+            this.name = name;
+            this.scores = scores;
+            this.overBudget = overBudget;
+            this.millis = millis;
+            this.dealerCpuMillis = dealerCpuMillis;
+        }
+    }
+
+    /**
+     * Starts a game, if the host can admit it right away.
+     *
+     * @param name      - the name of the game.
+     * @param overrides - the configuration of the game that differs from the host's (e.g. the number of players).
+     * @return          - a future completed with the result of the game once it is over.
+     * @throws RejectedExecutionException - if the host runs as many games (or players) as it may, or was closed.
+     */
+    public CompletableFuture<GameResult> submit(String name, Properties overrides) {
+        Properties gameProperties = new Properties();
+        gameProperties.putAll(properties);
+        gameProperties.putAll(overrides);
+        Logger gameLogger = gameLogger(name);
+        Config gameConfig = new Config(gameLogger, gameProperties);
+        if (!gamePermits.tryAcquire())
+            throw new RejectedExecutionException("the host runs " + config.hostMaxGames + " games already");
+        if (!playerPermits.tryAcquire(gameConfig.players)) {
+            gamePermits.release();
+            throw new RejectedExecutionException("the host cannot run " + gameConfig.players + " more players");
+        }
+        return start(name, gameLogger, gameConfig, overrides.getProperty("ShuffleSeed") != null ? gameConfig.shuffleSeed : nextSeed());
+    }
+
+    /**
+     * Plays games (all with the host's configuration) as fast as the host admits them, and prints out the results.
+     *
+     * @param games - the number of games to play.
+     */
+    public void run(int games) {
+        long start = System.nanoTime();
+        List<CompletableFuture<GameResult>> results = new ArrayList<>(games);
+        if (config.players > config.hostMaxPlayers) {
+            logger.severe("the host cannot run games of " + config.players + " players (see HostMaxPlayers)");
+            games = 0;
+        }
+        try {
+            for (int game = 0; game < games; ++game) {
+                String gameName = "game-" + game;
+                Logger gameLogger = gameLogger(gameName);
+                Config gameConfig = new Config(gameLogger, properties);
+                // the next game waits for a game to end if need be
+                gamePermits.acquire();
+                try {
+                    playerPermits.acquire(gameConfig.players);
+                } catch (InterruptedException e) {
+                    gamePermits.release();
+                    throw e;
+                }
+                results.add(start(gameName, gameLogger, gameConfig, nextSeed()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long[] scores = new long[config.players];
+        int overBudget = 0, failed = 0;
+        for (CompletableFuture<GameResult> result : results) {
+            try {
+                GameResult game = result.get();
+                for (int i = 0; i < scores.length && i < game.scores.length; i++)
+                    scores[i] += game.scores[i];
+                if (game.overBudget) ++overBudget;
+            } catch (ExecutionException e) {
+                ++failed;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        long realMillis = (System.nanoTime() - start) / 1000000L;
+
+        StringBuilder sb = new StringBuilder()
+                .append("Hosted ").append(results.size()).append(" games in ").append(realMillis).append(" ms")
+                .append(" (at most ").append(peak.get()).append(" at once, ").append(overBudget).append(" over budget, ")
+                .append(failed).append(" failed)").append(System.lineSeparator());
+        for (int i = 0; i < config.players; ++i)
+            sb.append(config.playerNames[i]).append(": ")
+                    .append(String.format("%.2f", results.isEmpty() ? 0.0 : (double) scores[i] / results.size()))
+                    .append(" points per game").append(System.lineSeparator());
+        logger.severe(sb.toString());
+        System.out.print(sb);
+    }
+
+    /**
+     * Starts an admitted game (whose permits were acquired).
+     */
+    private CompletableFuture<GameResult> start(String name, Logger logger, Config config, long shuffleSeed) {
+        try {
+            Clock clock = new SystemClock();
+            Util util = new UtilImpl(config);
+            GameJournal journal = FileGameJournal.open(this.name + "_" + name, logger, config, clock, shuffleSeed);
+            Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util, clock, journal);
+            Table table = new Table(env);
+            Player[] players = new Player[config.players];
+            Dealer dealer = new Dealer(env, table, players, shuffleSeed);
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(env, dealer, table, i, false);
+
+            ScheduledDealer game = new ScheduledDealer(env, dealer, scheduler, finisher, config.gameBudgetMillis,
+                    config.gameBudgetCpuMillis * 1000000L);
+            long start = clock.currentTimeMillis();
+            CompletableFuture<ScheduledDealer> done = game.start();
+            running.put(game, done);
+            peak.accumulateAndGet(running.size(), Math::max);
+            return done.whenComplete((ignored, failure) -> {
+                running.remove(game);
+                journal.close();
+                playerPermits.release(config.players);
+                gamePermits.release();
+            }).thenApply(ignored -> new GameResult(name, Arrays.stream(players).mapToInt(Player::getScore).toArray(),
+                    game.isOverBudget(), clock.currentTimeMillis() - start, game.getCpuNanos() / 1000000L));
+        } catch (RuntimeException e) {
+            playerPermits.release(config.players);
+            gamePermits.release();
+            throw e;
+        }
+    }
+
+    private long nextSeed() {
+        synchronized (seeds) {
+            return seeds.nextLong();
+        }
+    }
+
+    /**
+     * @return - the logger of a game, which logs through the host's logger with the name of the game.
+     */
+    private Logger gameLogger(String name) {
+        Logger gameLogger = new Logger(logger.getName() + "." + name, null) {
+            @Override
+            public void log(LogRecord record) {
+                record.setMessage("[" + name + "] " + record.getMessage());
+                super.log(record);
+            }
+        };
+        gameLogger.setParent(logger);
+        return gameLogger;
+    }
+
+    /**
+     * @return - the number of games running.
+     */
+    public int getRunningGames() {
+        return running.size();
+    }
+
+    /**
+     * Terminates the games running, waits for them to end and stops the threads of the host.
+     */
+    @Override
+    public void close() {
+        List<CompletableFuture<ScheduledDealer>> ending = new ArrayList<>(running.values());
+        running.keySet().forEach(ScheduledDealer::terminate);
+        try {
+            CompletableFuture.allOf(ending.toArray(new CompletableFuture<?>[0])).get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ignored) {
+        } catch (TimeoutException e) {
+            logger.severe(running.size() + " hosted games did not end in time.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler.shutdownNow();
+        finisher.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package bguspl.set;
+
+import java.io.Closeable;
+
+/**
+ * A record of the events of a game, for offline analysis (see FileGameJournal and GameJournalReader).
+ * The events are recorded by the dealer, the table and the players as they happen, from any thread. Every event has
+ * the same fields: the player, slot and card it concerns (-1 where it concerns none) and a value whose meaning depends
+ * on the event (see Event).
+ */
+public interface GameJournal extends Closeable {
+
+    /**
+     * The events of a game (the code of an event is its ordinal, so new events are only added at the end).
+     */
+    enum Event {
+        /** a card was placed on the table (slot, card). */
+        CARD_PLACED,
+        /** a card was removed from the table (slot, card). */
+        CARD_REMOVED,
+        /** a player placed a token (player, slot, card). */
+        TOKEN_PLACED,
+        /** a player removed its token (player, slot, card). */
+        TOKEN_REMOVED,
+        /**
+         * a player claimed a set with its tokens (player, slot: the sequence number of the claim in the game, value: 1
+         * iff the claimed cards form a legal set).
+         */
+        CLAIM,
+        /** the dealer handled a claim (player, value: one of the VERDICT constants). */
+        VERDICT,
+        /** a player was frozen (player, value: the number of milliseconds). */
+        FREEZE,
+        /** the score of a player changed (player, value: the new score). */
+        SCORE,
+        /** the dealer reshuffled the deck (value: the number of cards in the deck). */
+        RESHUFFLE,
+        /** the dealer removed a token of a player along with the cards (player, slot, and the card if still there). */
+        TOKEN_CLEARED,
+        /**
+         * the dealer took a claim to handle it, in a batch of claims recorded one after the other in the order of their
+         * sequence numbers (player, slot: the sequence number of the claim, value: the number of claims in the batch).
+         */
+        CLAIMS_TAKEN
+    }
+
+    /**
+     * The verdicts of claims (see Event.VERDICT): a void claim (its cards or tokens left the table before it was
+     * handled), a legal set or an illegal one.
+     */
+    int VERDICT_VOID = 0;
+    int VERDICT_POINT = 1;
+    int VERDICT_PENALTY = 2;
+
+    /**
+     * A journal that records nothing.
+     */
+    GameJournal NONE = (event, player, slot, card, value) -> {};
+
+    /**
+     * Records an event.
+     *
+     * @param event  - the event.
+     * @param player - the player the event concerns (-1 if none).
+     * @param slot   - the slot the event concerns (-1 if none).
+     * @param card   - the card the event concerns (-1 if none).
+     * @param value  - the value of the event (see Event).
+     */
+    void record(Event event, int player, int slot, int card, int value);
+
+    /**
+     * Writes out the events recorded so far and releases the journal's resources.
+     */
+    @Override
+    default void close() {
+    }
+}
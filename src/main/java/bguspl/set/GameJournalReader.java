@@ -0,0 +1,242 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a game journal written by FileGameJournal, one record at a time.
+ * The records are read into a large direct buffer and decoded in place, so reading does not allocate: either move a
+ * cursor over the records (see next) and read the fields of the current record, or hand every record to a visitor
+ * (see forEach). A partial record at the end of the file (e.g. of a journal that was not closed) is ignored, and a
+ * record of an unknown event fails the read with the offset of the record in the file.
+ */
+public class GameJournalReader implements Closeable {
+
+    /**
+     * Receives the records of a journal (see forEach).
+     */
+    public interface Visitor {
+        void event(long nanos, long millis, GameJournal.Event event, int player, int slot, int card, int value);
+    }
+
+    /**
+     * The default size of the buffer (in bytes, a multiple of FileGameJournal.RECORD_SIZE).
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final GameJournal.Event[] EVENTS = GameJournal.Event.values();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * The fields of the header.
+     */
+    private final long shuffleSeed;
+    private final int players;
+    private final int tableSize;
+    private final int deckSize;
+    private final int setSize;
+    private final long startTimeMillis;
+
+    /**
+     * The position of the current record in the buffer (-1 before the first record), and the offset in the file of
+     * the start of the buffer.
+     */
+    private int current = -1;
+    private long bufferOffset = FileGameJournal.HEADER_SIZE;
+
+    /**
+     * Opens a journal and reads its header.
+     *
+     * @param path - the journal file.
+     * @throws IOException - if the file cannot be read or is not a game journal.
+     */
+    public GameJournalReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FileGameJournal.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining())
+                if (channel.read(header) < 0)
+                    throw new IOException(path + " is not a game journal (too short)");
+            header.flip();
+            if (header.getInt() != FileGameJournal.MAGIC)
+                throw new IOException(path + " is not a game journal");
+            short version = header.getShort();
+            short recordSize = header.getShort();
+            if (version != FileGameJournal.VERSION || recordSize != FileGameJournal.RECORD_SIZE)
+                throw new IOException("unsupported game journal version " + version + " (record size " + recordSize + ")");
+            shuffleSeed = header.getLong();
+            players = header.getInt();
+            tableSize = header.getInt();
+            deckSize = header.getInt();
+            setSize = header.getInt();
+            startTimeMillis = header.getLong();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.limit(0);
+    }
+
+    public long shuffleSeed() {
+        return shuffleSeed;
+    }
+
+    public int players() {
+        return players;
+    }
+
+    public int tableSize() {
+        return tableSize;
+    }
+
+    public int deckSize() {
+        return deckSize;
+    }
+
+    public int setSize() {
+        return setSize;
+    }
+
+    /**
+     * @return - the time the journal was opened, in milliseconds since the epoch.
+     */
+    public long startTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return - the number of (whole) records in the journal.
+     * @throws IOException - if the size of the file cannot be read.
+     */
+    public long count() throws IOException {
+        return (channel.size() - FileGameJournal.HEADER_SIZE) / FileGameJournal.RECORD_SIZE;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return - false iff there are no more records.
+     * @throws IOException - if the file cannot be read, or the next record is of an unknown event.
+     */
+    public boolean next() throws IOException {
+        int next = current + FileGameJournal.RECORD_SIZE;
+        if (current < 0 || next + FileGameJournal.RECORD_SIZE > buffer.limit()) {
+            if (current >= 0)
+                buffer.position(next);
+            if (!fill())
+                return false;
+            next = 0;
+        }
+        current = next;
+        int ordinal = buffer.get(current + 16);
+        if (ordinal < 0 || ordinal >= EVENTS.length)
+            throw new IOException("unknown event " + ordinal + " in the game journal record at offset " + offset());
+        return true;
+    }
+
+    /**
+     * @return - the offset in the file of the current record.
+     */
+    private long offset() {
+        return bufferOffset + current;
+    }
+
+    /**
+     * Reads the next records into the buffer (keeping the rest of a partially read record).
+     *
+     * @return - false iff there is not a whole record left in the file.
+     */
+    private boolean fill() throws IOException {
+        bufferOffset += buffer.position();
+        buffer.compact();
+        while (buffer.position() < FileGameJournal.RECORD_SIZE)
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                current = -1;
+                return false;
+            }
+        // read as much as there is room for while it is cheap (the file is ahead)
+        while (buffer.hasRemaining() && channel.read(buffer) > 0);
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * The fields of the current record (see FileGameJournal for their meaning).
+     *
+     * @throws IllegalStateException - if there is no current record (see next).
+     */
+    public long nanos() {
+        checkRecord();
+        return buffer.getLong(current);
+    }
+
+    public long millis() {
+        checkRecord();
+        return buffer.getLong(current + 8);
+    }
+
+    public GameJournal.Event event() {
+        checkRecord();
+        return EVENTS[buffer.get(current + 16)];
+    }
+
+    public int player() {
+        checkRecord();
+        return buffer.getShort(current + 18);
+    }
+
+    public int slot() {
+        checkRecord();
+        return buffer.getInt(current + 20);
+    }
+
+    public int card() {
+        checkRecord();
+        return buffer.getInt(current + 24);
+    }
+
+    public int value() {
+        checkRecord();
+        return buffer.getInt(current + 28);
+    }
+
+    /**
+     * @throws IllegalStateException - if there is no whole record at the cursor (before the first record, or after
+     *                                 the last).
+     */
+    private void checkRecord() {
+        if (current < 0 || current + FileGameJournal.RECORD_SIZE > buffer.limit())
+            throw new IllegalStateException("no game journal record at offset "
+                    + (bufferOffset + Math.max(current, 0)));
+    }
+
+    /**
+     * Hands all the remaining records to a visitor, in order.
+     *
+     * @param visitor - the visitor.
+     * @return        - the number of records visited.
+     * @throws IOException - if the file cannot be read.
+     */
+    public long forEach(Visitor visitor) throws IOException {
+        long count = 0;
+        while (next()) {
+            visitor.event(nanos(), millis(), event(), player(), slot(), card(), value());
+            ++count;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,63 @@
+package bguspl.set;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads of the players and of the computer players' input, either platform threads or virtual threads
+ * (see Config::virtualThreads). The game is built for Java 8 while virtual threads came with Java 21, so they are
+ * created through reflection, and the players run on platform threads on an older runtime.
+ */
+public final class GameThreads {
+
+    /**
+     * The factory of virtual threads (null if the runtime has none).
+     */
+    private static final ThreadFactory VIRTUAL = virtualThreadFactory();
+
+    /**
+     * True iff the fallback to platform threads was logged already.
+     */
+    private static volatile boolean warned;
+
+    private GameThreads() {
+    }
+
+    /**
+     * Creates a (not started) thread for the task of a player.
+     *
+     * @param env  - the game environment objects.
+     * @param task - the task of the thread.
+     * @param name - the name of the thread.
+     * @return     - a virtual thread if the configuration asks for them and the runtime has them, a platform thread
+     *               otherwise.
+     */
+    public static Thread newThread(Env env, Runnable task, String name) {
+        if (env.config.virtualThreads && VIRTUAL != null) {
+            Thread thread = VIRTUAL.newThread(task);
+            thread.setName(name);
+            return thread;
+        }
+        if (env.config.virtualThreads && !warned) {
+            warned = true;
+            env.logger.warning("virtual threads are not supported by java " + System.getProperty("java.version")
+                    + ", the players run on platform threads");
+        }
+        return new Thread(task, name);
+    }
+
+    /**
+     * @return - true iff the runtime has virtual threads.
+     */
+    public static boolean hasVirtualThreads() {
+        return VIRTUAL != null;
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
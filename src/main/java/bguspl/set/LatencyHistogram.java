@@ -0,0 +1,197 @@
+package bguspl.set;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies (in nanoseconds) in the layout of HdrHistogram: the values are counted in buckets that
+ * double in width, each split into the same number of sub-buckets, so every value is counted with a relative error
+ * below 1 / SUB_BUCKET_HALF_COUNT (under 1%) while the histogram covers up to MAX_VALUE in a few thousand counters.
+ * Values above MAX_VALUE are counted as MAX_VALUE.
+ *
+ * Recording is lock-free (and wait-free but for the contended counters), so the histogram can be recorded to by many
+ * threads at once; a percentile read while values are recorded may miss some of them.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of sub-buckets of a bucket is 2^(SUB_BUCKET_HALF_COUNT_MAGNITUDE + 1).
+     */
+    private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = 7;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+    private static final int SUB_BUCKET_COUNT = SUB_BUCKET_HALF_COUNT << 1;
+    private static final long SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+    /**
+     * The largest value counted as is (about 18 minutes).
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    /**
+     * The number of percentiles reported between a percentile and halfway from it to 100% (see outputPercentiles).
+     */
+    private static final int PERCENTILE_TICKS_PER_HALF_DISTANCE = 5;
+
+    private final AtomicLongArray counts = new AtomicLongArray((BUCKET_COUNT + 1) * SUB_BUCKET_HALF_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value.
+     *
+     * @param value - the value (in nanoseconds, negative values are counted as 0).
+     */
+    public void record(long value) {
+        value = Math.min(Math.max(value, 0), MAX_VALUE);
+        counts.incrementAndGet(countsIndex(value));
+        totalCount.increment();
+        totalValue.add(value);
+        maxValue.accumulate(value);
+    }
+
+    /**
+     * Clears the histogram (the values recorded meanwhile may be lost or partly counted).
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+        totalCount.reset();
+        totalValue.reset();
+        maxValue.reset();
+    }
+
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    /**
+     * @return - the mean of the values (0 if none).
+     */
+    public double getMean() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalValue.sum() / count;
+    }
+
+    /**
+     * @param percentile - the percentile (between 0 and 100).
+     * @return           - the largest value (up to the precision of the histogram, but no more than the maximum) of
+     *                     the percentile of the values (0 if none).
+     */
+    public long getValueAtPercentile(double percentile) {
+        return Math.min(valueAtPercentile(snapshot(), percentile)[0], getMaxValue());
+    }
+
+    /**
+     * Prints out the distribution of the values in the format of HdrHistogram's percentile distribution: the value at
+     * percentiles that get closer to 100% as they go, the percentile, the count of the values up to the value and
+     * 1/(1-percentile), followed by the mean, the standard deviation, the maximum and the count of all the values.
+     *
+     * @param out   - the stream to print to.
+     * @param scale - the unit to print the values in (e.g. 1e6 for milliseconds).
+     */
+    public void outputPercentiles(PrintStream out, double scale) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long count : snapshot)
+            total += count;
+
+        out.format("%12s %14s %10s %14s%n%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+        if (total > 0) {
+            long max = getMaxValue();
+            double percentile = 0;
+            while (true) {
+                long[] valueAndCount = valueAtPercentile(snapshot, percentile);
+                if (valueAndCount[1] >= total)
+                    break;
+                out.format("%12.3f %2.12f %10d %14.2f%n", Math.min(valueAndCount[0], max) / scale, percentile / 100.0,
+                        valueAndCount[1], 1.0 / (1.0 - percentile / 100.0));
+                // the number of ticks to 100% doubles with every halving of the distance to it
+                long ticks = PERCENTILE_TICKS_PER_HALF_DISTANCE
+                        * (1L << ((long) (Math.log(100.0 / (100.0 - percentile)) / Math.log(2)) + 1));
+                percentile += 100.0 / ticks;
+            }
+            out.format("%12.3f %2.12f %10d%n", Math.min(valueAtPercentile(snapshot, 100)[0], max) / scale, 1.0, total);
+        }
+
+        double mean = 0, squares = 0;
+        for (int i = 0; i < snapshot.length; i++)
+            if (snapshot[i] > 0)
+                mean += (double) medianEquivalentValue(i) * snapshot[i];
+        mean = total == 0 ? 0 : mean / total;
+        for (int i = 0; i < snapshot.length; i++)
+            if (snapshot[i] > 0) {
+                double deviation = medianEquivalentValue(i) - mean;
+                squares += deviation * deviation * snapshot[i];
+            }
+        double deviation = total == 0 ? 0 : Math.sqrt(squares / total);
+        out.format("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", getMean() / scale, deviation / scale);
+        out.format("#[Max     = %12.3f, Total count    = %12d]%n", getMaxValue() / scale, total);
+        out.format("#[Buckets = %12d, SubBuckets     = %12d]%n", BUCKET_COUNT, SUB_BUCKET_COUNT);
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++)
+            snapshot[i] = counts.get(i);
+        return snapshot;
+    }
+
+    /**
+     * @return - the largest value of the percentile of the counted values, and the count of the values up to it.
+     */
+    private static long[] valueAtPercentile(long[] snapshot, double percentile) {
+        long total = 0;
+        for (long count : snapshot)
+            total += count;
+        if (total == 0)
+            return new long[]{0, 0};
+        long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100.0 * total));
+        long cumulative = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= countAtPercentile)
+                return new long[]{highestEquivalentValue(i), cumulative};
+        }
+        return new long[]{MAX_VALUE, total};
+    }
+
+    private static int bucketIndex(long value) {
+        return Math.max(0, 64 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK) - (SUB_BUCKET_HALF_COUNT_MAGNITUDE + 1));
+    }
+
+    private static int countsIndex(long value) {
+        int bucketIndex = bucketIndex(value);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        // the lower half of the sub-buckets of a bucket overlap the previous bucket, except in the first bucket
+        return ((bucketIndex + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE) + (subBucketIndex - SUB_BUCKET_HALF_COUNT);
+    }
+
+    private static long lowestEquivalentValue(int index) {
+        int bucketIndex = (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+        int subBucketIndex = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucketIndex < 0) {
+            subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+            bucketIndex = 0;
+        }
+        return (long) subBucketIndex << bucketIndex;
+    }
+
+    private static long highestEquivalentValue(int index) {
+        int bucketIndex = Math.max(0, (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1);
+        return lowestEquivalentValue(index) + (1L << bucketIndex) - 1;
+    }
+
+    private static long medianEquivalentValue(int index) {
+        int bucketIndex = Math.max(0, (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1);
+        return lowestEquivalentValue(index) + (1L << bucketIndex >> 1);
+    }
+}
@@ -0,0 +1,148 @@
+package bguspl.set;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The latencies of the stages of a key press and of a claim, from the key press to the verdict of the dealer showing
+ * (see Config::latencyMetrics). A key press and a claim carry the System.nanoTime stamps of their stages along, and
+ * the latency of each stage is recorded into a lock-free histogram of its own (see LatencyHistogram), so the players
+ * and the dealer record without waiting for one another.
+ */
+public class LatencyMetrics {
+
+    /**
+     * The stages, in the order a claim goes through them.
+     */
+    public enum Stage {
+
+        /**
+         * From a key press (see Player::keyPressed) until the player takes it off its queue.
+         */
+        KEY_QUEUE("key queue"),
+
+        /**
+         * From the player taking a key press until its token is placed (or removed) on the table and on the screen.
+         */
+        TOKEN("token placement"),
+
+        /**
+         * From a claim until the dealer takes it off the queue of claims.
+         */
+        CLAIM_QUEUE("claim queue"),
+
+        /**
+         * From the dealer taking a claim until it starts to handle it (after the claims made before it).
+         */
+        DEALER_PICKUP("dealer pickup"),
+
+        /**
+         * From the dealer starting to handle a claim until the verdict (including taking the cards of a set off).
+         */
+        VALIDATION("validation"),
+
+        /**
+         * From the verdict until the score or the freeze of the player is updated.
+         */
+        UI_UPDATE("ui update"),
+
+        /**
+         * From the key press that placed the last token of a claim until the score or the freeze is updated.
+         */
+        KEY_TO_VERDICT("key press to verdict");
+
+        public final String title;
+
+        Stage(String title) {
+            this.title = title;
+        }
+    }
+
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    private final boolean enabled;
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+
+    /**
+     * @param enabled - false to take no stamps and record nothing.
+     */
+    public LatencyMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (Stage stage : Stage.values())
+            histograms.put(stage, new LatencyHistogram());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return - a stamp of the current time (System.nanoTime), or 0 if the metrics are disabled.
+     */
+    public long now() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the latency of a stage.
+     *
+     * @param stage - the stage.
+     * @param start - the stamp of the start of the stage (0 if it was not stamped, and nothing is recorded).
+     * @param end   - the stamp of the end of the stage.
+     */
+    public void record(Stage stage, long start, long end) {
+        if (start != 0 && end != 0)
+            histograms.get(stage).record(end - start);
+    }
+
+    /**
+     * @return - the histogram of the latencies of a stage (in nanoseconds).
+     */
+    public LatencyHistogram histogram(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * Clears the histograms.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values())
+            histogram.reset();
+    }
+
+    /**
+     * @return - a table of the count, the median, the 90th, 99th and 99.9th percentiles and the maximum latency of
+     *           every stage (in microseconds).
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder(String.format("%-22s %10s %10s %10s %10s %10s %10s%n",
+                "latency (us)", "count", "p50", "p90", "p99", "p99.9", "max"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            sb.append(String.format("%-22s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", stage.title,
+                    histogram.getTotalCount(), histogram.getValueAtPercentile(50) / NANOS_PER_MICRO,
+                    histogram.getValueAtPercentile(90) / NANOS_PER_MICRO,
+                    histogram.getValueAtPercentile(99) / NANOS_PER_MICRO,
+                    histogram.getValueAtPercentile(99.9) / NANOS_PER_MICRO,
+                    histogram.getMaxValue() / NANOS_PER_MICRO));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prints out the summary, followed by the percentile distribution of every stage that was recorded (see
+     * LatencyHistogram::outputPercentiles, in microseconds).
+     */
+    public void dump(PrintStream out) {
+        out.print(summary());
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            if (histogram.getTotalCount() == 0)
+                continue;
+            out.println();
+            out.println("# " + stage.title + " (us)");
+            histogram.outputPercentiles(out, NANOS_PER_MICRO);
+        }
+    }
+}
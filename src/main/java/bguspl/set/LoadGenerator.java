@@ -0,0 +1,453 @@
+package bguspl.set;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static bguspl.set.NetworkProtocol.*;
+
+/**
+ * Generates load on a game served over the network (see NetworkUserInterface): connects many clients to it on a
+ * single thread, plays as the human players with the clients that can join as them, and reports the latencies the
+ * players see (see Config::loadConnections and the settings that follow it).
+ *
+ * A synthetic player plays like a person at the keyboard (see Player::keyPressed): it takes a while to react to a change
+ * of the table, looks for a set among the cards, takes its tokens off the other slots and presses the slots of the set
+ * one key after the other, sometimes pressing a neighbouring key of the grid of slots (Config::rows by
+ * Config::columns) by mistake. Placing the last token of a set claims it. The player waits for the verdict and its
+ * freeze to end before it reacts to the table again.
+ *
+ * The report holds the latency from a key press to the token showing up (or going away), and from a claim to the
+ * score showing the point or to the freeze showing the penalty, in the format of HdrHistogram (see LatencyHistogram).
+ */
+public class LoadGenerator {
+
+    /**
+     * How long a key press may go without its token showing up, or a claim without its verdict, until it is counted
+     * as lost (e.g. the player was frozen or its claim was void) (in nanoseconds).
+     */
+    private static final long PRESS_TIMEOUT_NANOS = 5000000000L;
+    private static final long CLAIM_TIMEOUT_NANOS = 10000000000L;
+
+    /**
+     * How long a claim whose cards left the table may go without its verdict (in nanoseconds): the cards leave just
+     * before a point shows up, or for good if another player claimed them first.
+     */
+    private static final long VOID_CLAIM_TIMEOUT_NANOS = 500000000L;
+
+    /**
+     * How often the key presses and claims are checked for timeouts (in nanoseconds).
+     */
+    private static final long SWEEP_NANOS = 100000000L;
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+    private final SocketAddress address;
+    private final Random random = new Random();
+
+    /**
+     * The latencies, from a key press to its token and from a claim to its verdict.
+     */
+    private final LatencyHistogram pressToToken = new LatencyHistogram();
+    private final LatencyHistogram claimToPoint = new LatencyHistogram();
+    private final LatencyHistogram claimToPenalty = new LatencyHistogram();
+
+    /**
+     * The counts of what the synthetic players did (and did not see happen).
+     */
+    private long presses;
+    private long wrongKeys;
+    private long lostPresses;
+    private long claims;
+    private long lostClaims;
+    private int disconnected;
+    private boolean layoutMismatch;
+
+    private final List<NetworkClient> clients = new ArrayList<>();
+    private final List<SyntheticPlayer> players = new ArrayList<>();
+
+    /**
+     * @param logger  - the logger.
+     * @param config  - the configuration (of the game, and of the load).
+     * @param util    - the utilities of the game (to find sets with).
+     * @param address - the address of the game.
+     */
+    public LoadGenerator(Logger logger, Config config, Util util, SocketAddress address) {
+        this.logger = logger;
+        this.config = config;
+        this.util = util;
+        this.address = address;
+    }
+
+    /**
+     * A client that plays as a human player.
+     */
+    private final class SyntheticPlayer extends NetworkClient {
+
+        private final int id;
+
+        /**
+         * The slots the player has a token on, as far as its key presses go.
+         */
+        private final BitSet expected = new BitSet();
+
+        /**
+         * The time of the key press of each slot whose token did not show up yet (0 for none), and of the claim whose
+         * verdict did not show up yet (0 for none).
+         */
+        private final long[] pressedAt = new long[config.tableSize];
+        private long claimedAt;
+
+        /**
+         * The slots of the claim, and the time its verdict is given up on.
+         */
+        private final BitSet claimed = new BitSet();
+        private long claimDeadline;
+
+        /**
+         * The slots to press, the next of them to press and the time to act next.
+         */
+        private int[] plan;
+        private int step;
+        private long nextAction = Long.MAX_VALUE;
+
+        SyntheticPlayer(int id) throws IOException {
+            super(address);
+            this.id = id;
+        }
+
+        private boolean joined() {
+            return getPlayer() == id;
+        }
+
+        @Override
+        protected void changed(byte type, int index) {
+            long now = System.nanoTime();
+            switch (type) {
+                case WELCOME:
+                    if (joined() && (getRows() != config.rows || getColumns() != config.columns))
+                        layoutMismatch = true;
+                    react(now);
+                    break;
+                case CARD:
+                    if (claimedAt == 0)
+                        react(now);
+                    else if (claimed.get(index))
+                        claimDeadline = Math.min(claimDeadline, now + VOID_CLAIM_TIMEOUT_NANOS);
+                    break;
+                case TOKENS:
+                    if (!joined() || index >= pressedAt.length)
+                        break;
+                    boolean token = hasToken(id, index);
+                    if (pressedAt[index] != 0 && token == expected.get(index)) {
+                        pressToToken.record(now - pressedAt[index]);
+                        pressedAt[index] = 0;
+                    } else if (pressedAt[index] == 0)
+                        // the dealer took the token off (with the card)
+                        expected.set(index, token);
+                    break;
+                case SCORE:
+                    if (index == id && claimedAt != 0) {
+                        claimToPoint.record(now - claimedAt);
+                        claimedAt = 0;
+                        resync();
+                    }
+                    break;
+                case FREEZE:
+                    if (index != id)
+                        break;
+                    if (getFreeze(id) > 0) {
+                        if (claimedAt != 0) {
+                            claimToPenalty.record(now - claimedAt);
+                            claimedAt = 0;
+                            resync();
+                        }
+                    } else
+                        react(now);
+                    break;
+                case WINNER:
+                    nextAction = Long.MAX_VALUE;
+                    break;
+            }
+        }
+
+        /**
+         * Looks at the table again after a reaction time.
+         */
+        private void react(long now) {
+            if (!joined())
+                return;
+            plan = null;
+            nextAction = now + humanDelay(config.loadReactionMillis);
+        }
+
+        private void act(long now) throws IOException {
+            if (getWinners() != null || claimedAt != 0 || getFreeze(id) > 0) {
+                nextAction = Long.MAX_VALUE;
+                return;
+            }
+            if (plan == null) {
+                plan = plan();
+                step = 0;
+                if (plan == null) {
+                    // no set on the table, until the table changes
+                    nextAction = Long.MAX_VALUE;
+                    return;
+                }
+            }
+            if (step >= plan.length) {
+                react(now);
+                return;
+            }
+
+            int slot = plan[step++];
+            if (random.nextDouble() < config.loadErrorRate) {
+                slot = neighbour(slot);
+                ++wrongKeys;
+            }
+            press(slot);
+            ++presses;
+            expected.flip(slot);
+            pressedAt[slot] = now;
+            if (expected.cardinality() == config.setSize) {
+                // the player claims the set with its last token
+                claimedAt = now;
+                claimDeadline = now + CLAIM_TIMEOUT_NANOS;
+                claimed.clear();
+                claimed.or(expected);
+                ++claims;
+                plan = null;
+                nextAction = Long.MAX_VALUE;
+            } else
+                nextAction = now + humanDelay(config.loadKeyMillis);
+        }
+
+        /**
+         * @return - the slots to press to claim a set on the table (the slots of the player's tokens off the set
+         *           first), or null if there is no set on the table.
+         */
+        private int[] plan() {
+            List<Integer> cards = new ArrayList<>();
+            int[] slotOf = new int[config.deckSize];
+            for (int slot = 0; slot < config.tableSize; slot++) {
+                int card = getCard(slot);
+                if (card != NONE && card < config.deckSize) {
+                    cards.add(card);
+                    slotOf[card] = slot;
+                }
+            }
+            List<int[]> sets = util.findSets(cards, 1);
+            if (sets.isEmpty())
+                return null;
+            BitSet target = new BitSet();
+            for (int card : sets.get(0))
+                target.set(slotOf[card]);
+            int[] slots = new int[config.tableSize];
+            int count = 0;
+            for (int slot = expected.nextSetBit(0); slot >= 0; slot = expected.nextSetBit(slot + 1))
+                if (!target.get(slot))
+                    slots[count++] = slot;
+            for (int slot = target.nextSetBit(0); slot >= 0; slot = target.nextSetBit(slot + 1))
+                if (!expected.get(slot))
+                    slots[count++] = slot;
+            return count == 0 ? null : Arrays.copyOf(slots, count);
+        }
+
+        /**
+         * Counts the key presses and the claim that went without an answer for too long as lost (e.g. the claim was
+         * void).
+         */
+        private void sweep(long now) {
+            for (int slot = 0; slot < pressedAt.length; slot++)
+                if (pressedAt[slot] != 0 && now - pressedAt[slot] > PRESS_TIMEOUT_NANOS) {
+                    // the player dropped the key press (e.g. it could not play at the time)
+                    ++lostPresses;
+                    pressedAt[slot] = 0;
+                    expected.set(slot, hasToken(id, slot));
+                }
+            if (claimedAt != 0 && now > claimDeadline) {
+                ++lostClaims;
+                claimedAt = 0;
+                resync();
+                react(now);
+            }
+        }
+
+        /**
+         * Takes the tokens of the player to be the ones on the table, once its claim is over. The updates of the tokens
+         * are coalesced, so a token that showed up and went away again (e.g. the last token of a set that gave a point)
+         * may never be seen.
+         */
+        private void resync() {
+            for (int slot = 0; slot < pressedAt.length; slot++) {
+                pressedAt[slot] = 0;
+                expected.set(slot, hasToken(id, slot));
+            }
+        }
+    }
+
+    /**
+     * @return - a slot next to a slot in the grid of slots (as a key next to a key on the keyboard).
+     */
+    private int neighbour(int slot) {
+        int row = slot / config.columns, column = slot % config.columns;
+        int[][] moves = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        for (int tries = 0; tries < moves.length; tries++) {
+            int[] move = moves[random.nextInt(moves.length)];
+            int r = row + move[0], c = column + move[1];
+            if (r >= 0 && r < config.rows && c >= 0 && c < config.columns)
+                return r * config.columns + c;
+        }
+        return slot;
+    }
+
+    /**
+     * @return - a delay of a person: log-normally distributed around a median (in nanoseconds).
+     */
+    private long humanDelay(long medianMillis) {
+        return (long) (medianMillis * NANOS_PER_MILLI * Math.exp(config.loadReactionSpread * random.nextGaussian()));
+    }
+
+    /**
+     * Connects the clients, plays until the game is over or the load duration passes, and writes the report.
+     */
+    public void run() throws IOException {
+        long start = System.nanoTime();
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < config.loadConnections; i++) {
+                NetworkClient client;
+                if (i < config.humanPlayers) {
+                    SyntheticPlayer player = new SyntheticPlayer(i);
+                    player.join(i);
+                    players.add(player);
+                    client = player;
+                } else
+                    client = new NetworkClient(address);
+                client.channel().register(selector, SelectionKey.OP_READ, client);
+                clients.add(client);
+            }
+            long connected = System.nanoTime();
+            long end = connected + config.loadDurationMillis * 1000000L;
+            long nextSweep = connected + SWEEP_NANOS;
+            for (long now = connected; now < end && !gameOver(); now = System.nanoTime()) {
+                long next = Math.min(end, nextSweep);
+                for (SyntheticPlayer player : players)
+                    next = Math.min(next, player.nextAction);
+                long waitMillis = (next - now) / 1000000L;
+                if (waitMillis > 0)
+                    selector.select(waitMillis);
+                else
+                    selector.selectNow();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    NetworkClient client = (NetworkClient) key.attachment();
+                    try {
+                        client.receive();
+                    } catch (IOException e) {
+                        key.cancel();
+                        ++disconnected;
+                    }
+                }
+                selector.selectedKeys().clear();
+
+                now = System.nanoTime();
+                for (SyntheticPlayer player : players)
+                    if (now >= player.nextAction) try {
+                        player.act(now);
+                    } catch (IOException e) {
+                        player.nextAction = Long.MAX_VALUE;
+                    }
+                if (now >= nextSweep) {
+                    nextSweep = now + SWEEP_NANOS;
+                    for (SyntheticPlayer player : players)
+                        player.sweep(now);
+                }
+            }
+            long millis = (System.nanoTime() - connected) / 1000000L;
+            long connectMillis = (connected - start) / 1000000L;
+
+            try (PrintStream out = new PrintStream(new FileOutputStream(config.loadReportFile), false, "UTF-8")) {
+                report(out, millis, connectMillis);
+            }
+            System.out.print(summary(millis, connectMillis));
+            logger.severe("the load report was written to " + config.loadReportFile);
+        } finally {
+            for (NetworkClient client : clients)
+                client.close();
+        }
+    }
+
+    private boolean gameOver() {
+        for (SyntheticPlayer player : players)
+            if (player.getWinners() != null)
+                return true;
+        return false;
+    }
+
+    private String summary(long millis, long connectMillis) {
+        long messages = clients.stream().mapToLong(NetworkClient::getMessages).sum();
+        StringBuilder sb = new StringBuilder()
+                .append(clients.size()).append(" clients (").append(players.size()).append(" playing) ran for ")
+                .append(millis).append(" ms (connected in ").append(connectMillis).append(" ms, ").append(disconnected)
+                .append(" disconnected) and were sent ").append(messages).append(" updates").append(System.lineSeparator())
+                .append(presses).append(" key presses (").append(wrongKeys).append(" wrong, ").append(lostPresses)
+                .append(" lost), ").append(claims).append(" claims (").append(lostClaims).append(" lost)")
+                .append(System.lineSeparator());
+        if (layoutMismatch)
+            sb.append("warning: the table of the game does not match Rows and Columns").append(System.lineSeparator());
+        summary(sb, "key press to token", pressToToken);
+        summary(sb, "claim to point", claimToPoint);
+        summary(sb, "claim to penalty", claimToPenalty);
+        return sb.toString();
+    }
+
+    private static void summary(StringBuilder sb, String name, LatencyHistogram histogram) {
+        sb.append(String.format("%-20s %8d samples, p50 %8.3f ms, p90 %8.3f ms, p99 %8.3f ms, max %8.3f ms%n", name + ":",
+                histogram.getTotalCount(), histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(90) / NANOS_PER_MILLI, histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                histogram.getMaxValue() / NANOS_PER_MILLI));
+    }
+
+    private void report(PrintStream out, long millis, long connectMillis) {
+        out.println("# load of " + clients.size() + " clients on " + address + " (values in milliseconds)");
+        for (String line : summary(millis, connectMillis).split(System.lineSeparator()))
+            out.println("# " + line);
+        out.println();
+        out.println("# key press to token");
+        pressToToken.outputPercentiles(out, NANOS_PER_MILLI);
+        out.println();
+        out.println("# claim to point (score)");
+        claimToPoint.outputPercentiles(out, NANOS_PER_MILLI);
+        out.println();
+        out.println("# claim to penalty (freeze)");
+        claimToPenalty.outputPercentiles(out, NANOS_PER_MILLI);
+    }
+
+    /**
+     * Generates load on the game served on NetworkAddress and NetworkPort, with the settings of config.properties.
+     *
+     * @param args - unused.
+     */
+    public static void main(String[] args) throws IOException {
+        Logger logger = Logger.getLogger("SetLoadGenerator");
+        Config config = new Config(logger, "config.properties");
+        if (config.networkPort == 0) {
+            System.out.println("set NetworkPort to the port of the game to generate load on it");
+            return;
+        }
+        new LoadGenerator(logger, config, new UtilImpl(config),
+                new InetSocketAddress(config.networkAddress, config.networkPort)).run();
+    }
+}
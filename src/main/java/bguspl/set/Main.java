@@ -1,15 +1,23 @@
 package bguspl.set;
 
 import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameSnapshot;
 import bguspl.set.ex.Player;
+import bguspl.set.ex.Replay;
 import bguspl.set.ex.Table;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.SplittableRandom;
 import java.util.logging.*;
 
 /**
@@ -23,6 +31,16 @@ public class Main {
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
+    /**
+     * The number of records the log buffer holds (see AsyncLogHandler).
+     */
+    private static final int LOG_BUFFER_RECORDS = 1 << 14;
+
+    /**
+     * The format of the dates in the names of the log and journal files (just to make them nicer :)
+     */
+    static final SimpleDateFormat LOG_DATE_FORMAT = new SimpleDateFormat("M-d_HH-mm-ss");
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
@@ -45,6 +63,29 @@ public class Main {
         Config config = new Config(logger, "config.properties");
         Util util = new UtilImpl(config);
 
+        if (!config.replayJournal.isEmpty()) {
+            replay(config, util);
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.flush();
+            return;
+        }
+
+        if (config.hostedGames > 0) {
+            try (GameHost host = new GameHost(logger, Config.loadProperties("config.properties", logger))) {
+                host.run(config.hostedGames);
+            }
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.flush();
+            return;
+        }
+
+        if (config.simulationGames > 0) {
+            new Simulator(logger, config, util).run(config.simulationGames);
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.flush();
+            return;
+        }
+
         Player[] players = new Player[config.players];
         UserInterface ui = null;
         try {
@@ -55,13 +96,20 @@ public class Main {
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
         }
+        ui = openNetwork(config, players, ui);
         ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        // the journal records the seed of the game, so it is chosen here rather than by the dealer
+        long shuffleSeed = config.shuffleSeed != 0 ? config.shuffleSeed : new SplittableRandom().nextLong();
+        Clock clock = new SystemClock();
+        String gameName = LOG_DATE_FORMAT.format(new Date());
+        GameJournal journal = FileGameJournal.open(gameName, logger, config, clock, shuffleSeed);
+        Env env = new Env(logger, config, ui, util, clock, journal);
 
         // create the game entities
         Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
+        GameSnapshot snapshot = openSnapshot(config);
+        dealer = new Dealer(env, table, players, shuffleSeed, snapshot);
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
@@ -79,19 +127,94 @@ public class Main {
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            env.journal.close();
+            dumpLatencies(env.metrics, gameName);
+            if (snapshot != null) try {
+                snapshot.close();
+            } catch (IOException e) {
+                logger.severe("cannot close the game snapshot: " + e);
+            }
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
 
+    /**
+     * Logs the latencies of the key presses and claims of the game and writes their distributions to
+     * ./logs/name_latency.hgrm (see Config::latencyMetrics).
+     */
+    private static void dumpLatencies(LatencyMetrics metrics, String name) {
+        if (!metrics.isEnabled())
+            return;
+        logger.info("latencies:" + System.lineSeparator() + metrics.summary());
+        try (PrintStream out = new PrintStream(new FileOutputStream("./logs/" + name + "_latency.hgrm"), false, "UTF-8")) {
+            metrics.dump(out);
+        } catch (IOException e) {
+            logger.severe("cannot write the latencies: " + e);
+        }
+    }
+
+    /**
+     * Serves the game to remote players on the network (see Config::networkPort).
+     *
+     * @return - a network user interface that forwards the calls to the user interface, or the user interface if the
+     *           game is not served on the network or the server cannot listen.
+     */
+    private static UserInterface openNetwork(Config config, Player[] players, UserInterface ui) {
+        if (config.networkPort == 0)
+            return ui;
+        try {
+            return new NetworkUserInterface(logger, config, players, new InetSocketAddress(config.networkAddress, config.networkPort), ui);
+        } catch (IOException e) {
+            logger.severe("cannot serve the game on port " + config.networkPort + ": " + e);
+            return ui;
+        }
+    }
+
+    /**
+     * Opens the snapshot of the game (see Config::snapshotFile).
+     *
+     * @return - the snapshot, or null if snapshots are disabled or the file cannot be opened.
+     */
+    private static GameSnapshot openSnapshot(Config config) {
+        if (config.snapshotFile.isEmpty())
+            return null;
+        try {
+            return new GameSnapshot(Paths.get(config.snapshotFile), config);
+        } catch (IOException | RuntimeException e) {
+            logger.severe("cannot open the game snapshot " + config.snapshotFile + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Replays a recorded game and prints out whether the replay matches the recording (see Config::replayJournal).
+     */
+    private static void replay(Config config, Util util) {
+        Replay replay = new Replay(logger, config, util, Paths.get(config.replayJournal));
+        String result;
+        long start = System.nanoTime();
+        try {
+            String divergence = replay.run();
+            long millis = (System.nanoTime() - start) / 1000000L;
+            result = divergence == null
+                    ? "Replayed " + replay.getEventCount() + " events of " + config.replayJournal + " in " + millis + " ms: the replay matches the recording."
+                    : "The replay of " + config.replayJournal + " diverged from the recording: " + divergence;
+        } catch (IOException e) {
+            result = "Cannot replay " + config.replayJournal + ": " + e.getMessage();
+        }
+        logger.severe(result);
+        System.out.println(result);
+    }
+
     private static Logger initLogger() {
 
-        //just to make our log file nicer :)
-        SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        Handler handler;
         try {
             //noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            // the players and the ui log on every action, so the records are written on a background thread
+            OutputStream out = new FileOutputStream("./logs/" + LOG_DATE_FORMAT.format(Calendar.getInstance().getTime()) + ".log");
+            handler = new AsyncLogHandler(out, LOG_BUFFER_RECORDS, AsyncLogHandler.OverflowPolicy.BLOCK);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -104,6 +227,12 @@ public class Main {
         return logger;
     }
 
+    public static void setLoggerOverflowPolicy(Logger logger, AsyncLogHandler.OverflowPolicy policy) {
+        Handler[] handlers = logger.getHandlers();
+        if (handlers != null) Arrays.stream(handlers).filter(h -> h instanceof AsyncLogHandler)
+                .forEach(h -> ((AsyncLogHandler) h).setOverflowPolicy(policy));
+    }
+
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
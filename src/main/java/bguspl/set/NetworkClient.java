@@ -0,0 +1,337 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.BooleanSupplier;
+
+import static bguspl.set.NetworkProtocol.*;
+
+/**
+ * A client of the network front-end (see NetworkUserInterface and NetworkProtocol), which mirrors the state of the
+ * game it is sent. The client is non-blocking, so that many of them can share a selector (see LoadGenerator), or it
+ * can wait for the state to reach a condition on its own (see await).
+ */
+public class NetworkClient implements Closeable {
+
+    /**
+     * The size of the buffers of the messages read and written (in bytes).
+     */
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int WRITE_BUFFER_SIZE = 64 * CLIENT_MESSAGE_LENGTH;
+
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private Selector selector;
+
+    /**
+     * The mirrored state of the game (empty until the client is welcomed).
+     */
+    private int player = NONE;
+    private int rejected = NONE;
+    private int rows;
+    private int columns;
+    private int[] cards = new int[0];
+    private BitSet[] tokens = new BitSet[0];
+    private int[] scores = new int[0];
+    private long[] freezes = new long[0];
+    private byte timerMode = COUNTDOWN;
+    private long timerMillis;
+    private int[] winners;
+    private long messages;
+
+    /**
+     * Connects to a server (blocking until connected).
+     *
+     * @param address - the address of the server.
+     * @throws IOException - if the client cannot connect.
+     */
+    public NetworkClient(SocketAddress address) throws IOException {
+        channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.connect(address);
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return - the channel of the client (e.g. to register with a selector for reading).
+     */
+    public SocketChannel channel() {
+        return channel;
+    }
+
+    /**
+     * Joins the game as a player (see NetworkProtocol::JOIN).
+     *
+     * @param player - the player id (NetworkProtocol::NONE to only watch the game).
+     */
+    public void join(int player) throws IOException {
+        send(JOIN, player);
+    }
+
+    /**
+     * Presses the key of a slot (see NetworkProtocol::PRESS).
+     */
+    public void press(int slot) throws IOException {
+        send(PRESS, slot);
+    }
+
+    private void send(byte type, int value) throws IOException {
+        if (out.remaining() < CLIENT_MESSAGE_LENGTH)
+            flush();
+        if (out.remaining() < CLIENT_MESSAGE_LENGTH)
+            throw new IOException("the server does not take in the messages of the client");
+        out.put(type).putShort((short) value);
+        flush();
+    }
+
+    /**
+     * Sends the server the messages that were not sent yet.
+     */
+    public void flush() throws IOException {
+        out.flip();
+        channel.write(out);
+        out.compact();
+    }
+
+    /**
+     * Reads the messages the server sent (without waiting for any), and applies them to the state.
+     *
+     * @return - the number of messages read.
+     * @throws IOException - if the connection was closed or the server sent an invalid message.
+     */
+    public int receive() throws IOException {
+        if (out.position() > 0)
+            flush();
+        int read = channel.read(in);
+        if (read < 0)
+            throw new IOException("the server closed the connection");
+        in.flip();
+        int count = 0;
+        while (decode())
+            ++count;
+        in.compact();
+        messages += count;
+        return count;
+    }
+
+    /**
+     * Waits until the client is welcomed and the state reaches a condition, reading the messages the server sends
+     * meanwhile.
+     *
+     * @param condition     - the condition.
+     * @param timeoutMillis - how long to wait at most.
+     * @return              - true iff the state reached the condition in time.
+     */
+    public boolean await(BooleanSupplier condition, long timeoutMillis) throws IOException {
+        if (selector == null) {
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        receive();
+        while (rows == 0 || !condition.getAsBoolean()) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0)
+                return false;
+            selector.select(left);
+            selector.selectedKeys().clear();
+            receive();
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a message from the buffer read and applies it, if the whole message was read.
+     *
+     * @return - true iff a message was decoded.
+     */
+    private boolean decode() throws IOException {
+        if (!in.hasRemaining())
+            return false;
+        int start = in.position();
+        byte type = in.get(start);
+        int index = NONE;
+        switch (type) {
+            case WELCOME:
+                if (in.remaining() < WELCOME_LENGTH) return false;
+                in.get();
+                welcome(in.getShort(), in.getShort(), in.getShort(), in.getShort());
+                index = player;
+                break;
+            case REJECT:
+                if (in.remaining() < REJECT_LENGTH) return false;
+                in.get();
+                rejected = index = in.getShort();
+                break;
+            case CARD:
+                if (in.remaining() < CARD_LENGTH) return false;
+                in.get();
+                index = slot(in.getShort());
+                cards[index] = in.getShort();
+                break;
+            case TOKENS:
+                if (in.remaining() < TOKENS_LENGTH || in.remaining() < TOKENS_LENGTH + 2 * in.getShort(start + 3))
+                    return false;
+                in.get();
+                index = slot(in.getShort());
+                BitSet slotTokens = tokens[index];
+                slotTokens.clear();
+                for (int i = in.getShort(); i > 0; i--)
+                    slotTokens.set(player(in.getShort()));
+                break;
+            case SCORE:
+                if (in.remaining() < SCORE_LENGTH) return false;
+                in.get();
+                index = player(in.getShort());
+                scores[index] = in.getInt();
+                break;
+            case FREEZE:
+                if (in.remaining() < FREEZE_LENGTH) return false;
+                in.get();
+                index = player(in.getShort());
+                freezes[index] = in.getLong();
+                break;
+            case TIMER:
+                if (in.remaining() < TIMER_LENGTH) return false;
+                in.get();
+                timerMode = in.get();
+                timerMillis = in.getLong();
+                break;
+            case WINNER:
+                if (in.remaining() < WINNER_LENGTH || in.remaining() < WINNER_LENGTH + 2 * in.getShort(start + 1))
+                    return false;
+                in.get();
+                int[] players = new int[in.getShort()];
+                for (int i = 0; i < players.length; i++)
+                    players[i] = player(in.getShort());
+                winners = players;
+                break;
+            default:
+                throw new IOException("the server sent a message of unknown type " + type);
+        }
+        changed(type, index);
+        return true;
+    }
+
+    /**
+     * Called once a message was applied to the state (e.g. to react to it).
+     *
+     * @param type  - the type of the message (see NetworkProtocol).
+     * @param index - the slot or player the message is about (NetworkProtocol::NONE if neither).
+     */
+    protected void changed(byte type, int index) {
+    }
+
+    private void welcome(int player, int rows, int columns, int players) {
+        this.player = player;
+        if (rows == this.rows && columns == this.columns && players == scores.length)
+            return;
+        this.rows = rows;
+        this.columns = columns;
+        cards = new int[rows * columns];
+        Arrays.fill(cards, NONE);
+        tokens = new BitSet[rows * columns];
+        Arrays.setAll(tokens, slot -> new BitSet(players));
+        scores = new int[players];
+        freezes = new long[players];
+    }
+
+    private int slot(int slot) throws IOException {
+        if (slot < 0 || slot >= cards.length)
+            throw new IOException("the server sent an invalid slot " + slot);
+        return slot;
+    }
+
+    private int player(int player) throws IOException {
+        if (player < 0 || player >= scores.length)
+            throw new IOException("the server sent an invalid player " + player);
+        return player;
+    }
+
+    /**
+     * @return - the player the client joined as (NetworkProtocol::NONE if it only watches the game).
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * @return - the player the server last refused to let the client join as (NetworkProtocol::NONE if none).
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return - the card in a slot (NetworkProtocol::NONE for none).
+     */
+    public int getCard(int slot) {
+        return cards[slot];
+    }
+
+    public boolean hasToken(int player, int slot) {
+        return tokens[slot].get(player);
+    }
+
+    public int getScore(int player) {
+        return scores[player];
+    }
+
+    public long getFreeze(int player) {
+        return freezes[player];
+    }
+
+    /**
+     * @return - the mode of the timer (see NetworkProtocol::TIMER).
+     */
+    public byte getTimerMode() {
+        return timerMode;
+    }
+
+    public long getTimerMillis() {
+        return timerMillis;
+    }
+
+    /**
+     * @return - the winners of the game (null while it goes on).
+     */
+    public int[] getWinners() {
+        return winners;
+    }
+
+    /**
+     * @return - the number of messages the client was sent.
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (selector != null)
+            selector.close();
+        channel.close();
+    }
+}
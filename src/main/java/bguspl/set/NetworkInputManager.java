@@ -0,0 +1,72 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class handles the input from the network (see NetworkServer): it lets a client join as a human player and
+ * dispatches the slots the client presses to that player, like InputManager does for the keyboard. Called on the
+ * server's thread only.
+ */
+class NetworkInputManager {
+
+    private final Player[] players;
+    private final Logger logger;
+    private final int humanPlayers;
+    private final int tableSize;
+
+    /**
+     * True iff a client joined as the player.
+     */
+    private final boolean[] joined;
+
+    public NetworkInputManager(Logger logger, Config config, Player[] players) {
+        this.players = players;
+        this.logger = logger;
+        humanPlayers = config.humanPlayers;
+        tableSize = config.tableSize;
+        joined = new boolean[config.players];
+    }
+
+    /**
+     * Lets a client join as a player.
+     *
+     * @param player - the player id.
+     * @return       - true iff the player is human and no other client joined as it.
+     */
+    boolean join(int player) {
+        if (player < 0 || player >= humanPlayers || joined[player])
+            return false;
+        joined[player] = true;
+        logger.severe("player " + (player + 1) + " joined over the network");
+        return true;
+    }
+
+    /**
+     * Lets another client join as a player a client joined as.
+     */
+    void leave(int player) {
+        if (player >= 0 && player < joined.length && joined[player]) {
+            joined[player] = false;
+            logger.severe("player " + (player + 1) + " left over the network");
+        }
+    }
+
+    /**
+     * Dispatches a slot a client pressed to the player it joined as. The press is dropped if the player's queue of key
+     * presses is full, since the server must not wait for the player.
+     */
+    void keyPressed(int player, int slot) {
+        if (player < 0 || player >= joined.length || !joined[player] || slot < 0 || slot >= tableSize)
+            return;
+        Player target = players[player];
+        if (target == null)
+            return;
+        // logged at fine only: this runs on the selector thread, which must not wait for the log
+        if (logger.isLoggable(Level.FINE))
+            logger.fine("slot " + slot + " was pressed by player " + (player + 1) + " over the network");
+        target.offerKeyPressed(slot);
+    }
+}
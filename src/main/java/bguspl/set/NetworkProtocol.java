@@ -0,0 +1,74 @@
+package bguspl.set;
+
+/**
+ * The binary protocol of the network front-end (see NetworkUserInterface), spoken over TCP. Every message is a type
+ * byte followed by its fields, in big-endian order; player ids and slots are shorts.
+ *
+ * A client sends fixed-length messages:
+ * JOIN  (short player) - take over a human player (-1 to only watch the game).
+ * PRESS (short slot)   - press the key of a slot (see Player::keyPressed) as the player the client joined as.
+ *
+ * The server greets every connection with a WELCOME as a spectator (player -1) followed by the state of the game, and
+ * then sends the changes of the state. A change is sent as the latest state of what changed (e.g. the tokens of a
+ * slot, the score of a player), so changes that happen while a client lags behind are coalesced into one message:
+ * WELCOME (short player, short rows, short columns, short players) - the player the client plays as, and the table.
+ * REJECT  (short player)                          - the player cannot be joined (it is a computer or taken).
+ * CARD    (short slot, short card)                - the card in a slot (-1 for none).
+ * TOKENS  (short slot, short count, count shorts) - the players with a token in a slot.
+ * SCORE   (short player, int score)
+ * FREEZE  (short player, long millis)             - the freeze time left of a player (0 for none).
+ * TIMER   (byte mode, long millis)                - the countdown (mode COUNTDOWN or WARNING) or elapsed time (ELAPSED).
+ * WINNER  (short count, count shorts)             - the winners of the game, once it is over.
+ */
+public final class NetworkProtocol {
+
+    /**
+     * The types of the messages of a client.
+     */
+    public static final byte JOIN = 0x01;
+    public static final byte PRESS = 0x02;
+
+    /**
+     * The length of every message of a client (in bytes).
+     */
+    public static final int CLIENT_MESSAGE_LENGTH = 3;
+
+    /**
+     * The types of the messages of the server.
+     */
+    public static final byte WELCOME = 0x10;
+    public static final byte REJECT = 0x11;
+    public static final byte CARD = 0x20;
+    public static final byte TOKENS = 0x21;
+    public static final byte SCORE = 0x22;
+    public static final byte FREEZE = 0x23;
+    public static final byte TIMER = 0x24;
+    public static final byte WINNER = 0x25;
+
+    /**
+     * The lengths of the messages of the server (in bytes, before the players listed in TOKENS and WINNER).
+     */
+    public static final int WELCOME_LENGTH = 9;
+    public static final int REJECT_LENGTH = 3;
+    public static final int CARD_LENGTH = 5;
+    public static final int TOKENS_LENGTH = 5;
+    public static final int SCORE_LENGTH = 7;
+    public static final int FREEZE_LENGTH = 11;
+    public static final int TIMER_LENGTH = 10;
+    public static final int WINNER_LENGTH = 3;
+
+    /**
+     * The modes of the timer.
+     */
+    public static final byte COUNTDOWN = 0;
+    public static final byte WARNING = 1;
+    public static final byte ELAPSED = 2;
+
+    /**
+     * The player of a client that only watches the game, and the card of an empty slot.
+     */
+    public static final short NONE = -1;
+
+    private NetworkProtocol() {
+    }
+}
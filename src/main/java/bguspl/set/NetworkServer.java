@@ -0,0 +1,376 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static bguspl.set.NetworkProtocol.*;
+
+/**
+ * The server of the network user interface (see NetworkUserInterface). A single thread multiplexes all the connections
+ * with a selector: it accepts clients, reads their messages (see NetworkProtocol) and sends each of them the changes of
+ * the state of the game.
+ *
+ * The game only marks the state as changed, and the server sends a client the changes since the version it was last
+ * sent once the client took in everything it was sent before. So a client that lags behind never has more than one
+ * batch of changes waiting for it, and the changes it missed meanwhile are coalesced into the next batch. Since the
+ * clients that keep up are usually at the same version, a batch is encoded once and sent to all of them.
+ */
+class NetworkServer implements Runnable {
+
+    /**
+     * The size of the buffer of the messages read from a client (in bytes).
+     */
+    private static final int READ_BUFFER_SIZE = 64 * CLIENT_MESSAGE_LENGTH;
+
+    /**
+     * The number of connections the system may hold for the server before it accepts them (so that a burst of clients
+     * is not turned away while the server is busy).
+     */
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    /**
+     * How long closing the server waits for it to send the last changes and stop (in milliseconds).
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final Logger logger;
+    private final NetworkUserInterface ui;
+    private final NetworkInputManager input;
+    private final int rows;
+    private final int columns;
+    private final int players;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private ThreadLogger thread;
+
+    /**
+     * True iff the server was asked to send the changes of the state (and the selector was woken up for it).
+     */
+    private final AtomicBoolean changed = new AtomicBoolean();
+    private volatile boolean closing;
+
+    /**
+     * The clients connected (only accessed by the server's thread, besides the count).
+     */
+    private final List<Connection> connections = new ArrayList<>();
+    private volatile int connectionCount;
+
+    /**
+     * The latest batch of changes encoded, from the version it was encoded since up to the version it was encoded at.
+     */
+    private final ByteBuffer batch;
+    private long batchSince = -1;
+    private long batchVersion = -1;
+
+    /**
+     * A connected client.
+     */
+    private static final class Connection {
+
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        /**
+         * The bytes to send the client before any further changes (null for none).
+         */
+        ByteBuffer out;
+
+        /**
+         * The version of the state the client was sent, and the player it joined as.
+         */
+        long version;
+        int player = NONE;
+
+        /**
+         * The index of the connection in the list of connections.
+         */
+        int index;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    NetworkServer(Logger logger, Config config, NetworkUserInterface ui, NetworkInputManager input, SocketAddress address) throws IOException {
+        this.logger = logger;
+        this.ui = ui;
+        this.input = input;
+        rows = config.rows;
+        columns = config.columns;
+        players = config.players;
+        batch = ByteBuffer.allocateDirect(ui.maxChangesLength());
+
+        selector = Selector.open();
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(address, ACCEPT_BACKLOG);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+    }
+
+    void start() {
+        thread = new ThreadLogger(this, "network", logger);
+        thread.startWithLog();
+        logger.severe("listening for remote players on " + getAddress());
+    }
+
+    SocketAddress getAddress() {
+        try {
+            return serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    int getConnections() {
+        return connectionCount;
+    }
+
+    /**
+     * Asks the server to send the clients the changes of the state.
+     */
+    void changed() {
+        if (!changed.getAndSet(true))
+            selector.wakeup();
+    }
+
+    /**
+     * Stops the server, after it tries to send the clients the last changes.
+     */
+    void close() {
+        closing = true;
+        selector.wakeup();
+        if (thread != null && thread != Thread.currentThread()) try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closing) {
+                selector.select();
+                boolean changes = changed.getAndSet(false);
+                long version = ui.getVersion();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept(version);
+                    else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable() && !read(connection))
+                            continue;
+                        // a client is sent the answer to its join right away
+                        if (key.isWritable() || connection.out != null)
+                            send(connection, version);
+                    }
+                }
+                if (changes)
+                    sendChanges(version);
+            }
+            // the last changes (e.g. the winners) go to the clients that can take them right away
+            sendChanges(ui.getVersion());
+        } catch (IOException e) {
+            logger.severe("the network server failed: " + e);
+        } finally {
+            for (Connection connection : new ArrayList<>(connections))
+                disconnect(connection);
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {
+            }
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+        }
+    }
+
+    private void accept(long version) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel, channel.register(selector, SelectionKey.OP_READ));
+                connection.key.attach(connection);
+                connection.index = connections.size();
+                connections.add(connection);
+                connectionCount = connections.size();
+                // a new client is sent the whole state, as the changes since the start
+                queue(connection, welcome(NONE));
+                send(connection, version);
+            } catch (IOException e) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the messages of a client and handles them.
+     *
+     * @return - false iff the client disconnected.
+     */
+    private boolean read(Connection connection) {
+        ByteBuffer in = connection.in;
+        try {
+            if (connection.channel.read(in) < 0) {
+                disconnect(connection);
+                return false;
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+            return false;
+        }
+        in.flip();
+        while (in.remaining() >= CLIENT_MESSAGE_LENGTH) {
+            byte type = in.get();
+            short value = in.getShort();
+            if (type == JOIN)
+                join(connection, value);
+            else if (type == PRESS)
+                input.keyPressed(connection.player, value);
+            else {
+                logger.warning("a client sent a message of unknown type " + type + ", disconnecting it");
+                disconnect(connection);
+                return false;
+            }
+        }
+        in.compact();
+        return true;
+    }
+
+    private void join(Connection connection, int player) {
+        if (player == connection.player)
+            return;
+        if (player == NONE || input.join(player)) {
+            input.leave(connection.player);
+            connection.player = player;
+            queue(connection, welcome(player));
+        } else {
+            ByteBuffer reject = ByteBuffer.allocate(REJECT_LENGTH);
+            reject.put(REJECT).putShort((short) player).flip();
+            queue(connection, reject);
+        }
+    }
+
+    private ByteBuffer welcome(int player) {
+        ByteBuffer welcome = ByteBuffer.allocate(WELCOME_LENGTH);
+        welcome.put(WELCOME).putShort((short) player).putShort((short) rows).putShort((short) columns)
+                .putShort((short) players).flip();
+        return welcome;
+    }
+
+    /**
+     * Queues a message to send a client ahead of any further changes.
+     */
+    private static void queue(Connection connection, ByteBuffer message) {
+        if (connection.out == null || !connection.out.hasRemaining()) {
+            connection.out = message;
+            return;
+        }
+        ByteBuffer out = ByteBuffer.allocate(connection.out.remaining() + message.remaining());
+        out.put(connection.out).put(message).flip();
+        connection.out = out;
+    }
+
+    /**
+     * Sends the changes of the state to every client that is not still taking in what it was sent before.
+     */
+    private void sendChanges(long version) {
+        // a client that disconnects is replaced by the last one, which was visited already
+        for (int i = connections.size() - 1; i >= 0; i--)
+            if (i < connections.size())
+                send(connections.get(i), version);
+    }
+
+    /**
+     * Sends a client what it was not sent yet: the bytes queued for it, and then the changes of the state.
+     */
+    private void send(Connection connection, long version) {
+        try {
+            if (connection.out != null) {
+                connection.channel.write(connection.out);
+                if (connection.out.hasRemaining()) {
+                    interest(connection, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.out = null;
+            }
+            if (connection.version < version) {
+                ByteBuffer changes = changesSince(connection.version, version);
+                connection.version = batchVersion;
+                connection.channel.write(changes);
+                if (changes.hasRemaining()) {
+                    // the rest is copied, since the batch is shared by the clients
+                    connection.out = ByteBuffer.allocate(changes.remaining());
+                    connection.out.put(changes).flip();
+                    interest(connection, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            interest(connection, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    /**
+     * @return - the batch of changes since a version, up to at least another version (a view of the shared batch).
+     */
+    private ByteBuffer changesSince(long since, long version) {
+        if (since != batchSince || batchVersion < version) {
+            batch.clear();
+            batchVersion = ui.encodeChanges(since, batch);
+            batchSince = since;
+            batch.flip();
+        }
+        return batch.duplicate();
+    }
+
+    private static void interest(Connection connection, int ops) {
+        if (connection.key.interestOps() != ops)
+            connection.key.interestOps(ops);
+    }
+
+    private void disconnect(Connection connection) {
+        input.leave(connection.player);
+        connection.player = NONE;
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+        }
+        int index = connection.index;
+        if (index < connections.size() && connections.get(index) == connection) {
+            Connection last = connections.remove(connections.size() - 1);
+            if (last != connection) {
+                last.index = index;
+                connections.set(index, last);
+            }
+            connectionCount = connections.size();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.logging.Logger;
+
+import static bguspl.set.NetworkProtocol.*;
+
+/**
+ * A user interface for remote players, over the network (see NetworkProtocol and Config::networkPort). It keeps the
+ * state of the game the players see, and serves it to the clients connected to its server (see NetworkServer), which
+ * press keys on behalf of the human players they join as (see NetworkInputManager).
+ *
+ * Every part of the state (a card, the tokens of a slot, a score, a freeze, the timer, the winners) carries the
+ * version of its latest change, so a client is sent whatever changed since the version it was last sent, however many
+ * times it changed meanwhile. The calls are forwarded to another user interface (if any), so the game can be played
+ * both on the screen and over the network.
+ */
+public class NetworkUserInterface implements UserInterface {
+
+    private final UserInterface ui;
+    private final NetworkServer server;
+
+    private final int tableSize;
+    private final int players;
+
+    /**
+     * The state of the game (guarded by this), and the versions of its parts.
+     */
+    private final int[] cards;
+    private final BitSet[] tokens;
+    private final int[] scores;
+    private final long[] freezes;
+    private byte timerMode = COUNTDOWN;
+    private long timerMillis;
+    private int[] winners = new int[0];
+
+    private long version;
+    private final long[] cardVersions;
+    private final long[] tokenVersions;
+    private final long[] scoreVersions;
+    private final long[] freezeVersions;
+    private long timerVersion;
+    private long winnerVersion;
+
+    /**
+     * @param logger  - the logger.
+     * @param config  - the game configuration.
+     * @param players - the players (filled in by the caller later on).
+     * @param address - the address to listen on.
+     * @param ui      - the user interface to forward the calls to (null for none).
+     * @throws IOException - if the server cannot listen on the address.
+     */
+    public NetworkUserInterface(Logger logger, Config config, Player[] players, SocketAddress address, UserInterface ui) throws IOException {
+        this.ui = ui;
+        tableSize = config.tableSize;
+        this.players = config.players;
+        cards = new int[tableSize];
+        Arrays.fill(cards, NONE);
+        tokens = new BitSet[tableSize];
+        Arrays.setAll(tokens, slot -> new BitSet(this.players));
+        scores = new int[this.players];
+        freezes = new long[this.players];
+        cardVersions = new long[tableSize];
+        tokenVersions = new long[tableSize];
+        scoreVersions = new long[this.players];
+        freezeVersions = new long[this.players];
+
+        server = new NetworkServer(logger, config, this, new NetworkInputManager(logger, config, players), address);
+        server.start();
+    }
+
+    /**
+     * @return - the address the server listens on (e.g. to find the port it was given).
+     */
+    public SocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * @return - the number of clients connected.
+     */
+    public int getConnections() {
+        return server.getConnections();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        synchronized (this) {
+            setCard(card, slot);
+        }
+        server.changed();
+        if (ui != null) ui.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        synchronized (this) {
+            setCard(NONE, slot);
+        }
+        server.changed();
+        if (ui != null) ui.removeCard(slot);
+    }
+
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        synchronized (this) {
+            for (int i = 0; i < slots.length; i++)
+                setCard(cards[i], slots[i]);
+        }
+        server.changed();
+        if (ui != null) ui.placeCards(cards, slots);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        synchronized (this) {
+            for (int slot : slots)
+                setCard(NONE, slot);
+        }
+        server.changed();
+        if (ui != null) ui.removeCards(slots);
+    }
+
+    private void setCard(int card, int slot) {
+        cards[slot] = card;
+        cardVersions[slot] = ++version;
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        synchronized (this) {
+            tokens[slot].set(player);
+            tokenVersions[slot] = ++version;
+        }
+        server.changed();
+        if (ui != null) ui.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        synchronized (this) {
+            for (int slot = 0; slot < tableSize; slot++)
+                if (!tokens[slot].isEmpty()) {
+                    tokens[slot].clear();
+                    tokenVersions[slot] = ++version;
+                }
+        }
+        server.changed();
+        if (ui != null) ui.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        synchronized (this) {
+            tokens[slot].clear();
+            tokenVersions[slot] = ++version;
+        }
+        server.changed();
+        if (ui != null) ui.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        synchronized (this) {
+            tokens[slot].clear(player);
+            tokenVersions[slot] = ++version;
+        }
+        server.changed();
+        if (ui != null) ui.removeToken(player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        setTimer(warn ? WARNING : COUNTDOWN, millies);
+        if (ui != null) ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        setTimer(ELAPSED, millies);
+        if (ui != null) ui.setElapsed(millies);
+    }
+
+    private void setTimer(byte mode, long millis) {
+        synchronized (this) {
+            timerMode = mode;
+            timerMillis = millis;
+            timerVersion = ++version;
+        }
+        server.changed();
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        synchronized (this) {
+            freezes[player] = Math.max(0, millies);
+            freezeVersions[player] = ++version;
+        }
+        server.changed();
+        if (ui != null) ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        synchronized (this) {
+            scores[player] = score;
+            scoreVersions[player] = ++version;
+        }
+        server.changed();
+        if (ui != null) ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        synchronized (this) {
+            winners = players.clone();
+            winnerVersion = ++version;
+        }
+        server.changed();
+        if (ui != null) ui.announceWinner(players);
+    }
+
+    /**
+     * Stops the server (after it sends the clients the last changes) and disposes of the other user interface.
+     */
+    @Override
+    public void dispose() {
+        server.close();
+        if (ui != null) ui.dispose();
+    }
+
+    /**
+     * @return - the version of the latest change of the state.
+     */
+    synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return - the largest number of bytes the changes of the state take (see encodeChanges).
+     */
+    int maxChangesLength() {
+        return tableSize * (CARD_LENGTH + TOKENS_LENGTH + 2 * players) + players * (SCORE_LENGTH + FREEZE_LENGTH)
+                + TIMER_LENGTH + WINNER_LENGTH + 2 * players;
+    }
+
+    /**
+     * Writes the messages of the parts of the state that changed since a version.
+     *
+     * @param since - the version the client was last sent.
+     * @param out   - the buffer to write to (with at least maxChangesLength bytes remaining).
+     * @return      - the version the client is sent now.
+     */
+    synchronized long encodeChanges(long since, ByteBuffer out) {
+        for (int slot = 0; slot < tableSize; slot++)
+            if (cardVersions[slot] > since)
+                out.put(CARD).putShort((short) slot).putShort((short) cards[slot]);
+        for (int slot = 0; slot < tableSize; slot++)
+            if (tokenVersions[slot] > since) {
+                BitSet slotTokens = tokens[slot];
+                out.put(TOKENS).putShort((short) slot).putShort((short) slotTokens.cardinality());
+                for (int player = slotTokens.nextSetBit(0); player >= 0; player = slotTokens.nextSetBit(player + 1))
+                    out.putShort((short) player);
+            }
+        for (int player = 0; player < players; player++) {
+            if (scoreVersions[player] > since)
+                out.put(SCORE).putShort((short) player).putInt(scores[player]);
+            if (freezeVersions[player] > since)
+                out.put(FREEZE).putShort((short) player).putLong(freezes[player]);
+        }
+        if (timerVersion > since)
+            out.put(TIMER).put(timerMode).putLong(timerMillis);
+        if (winnerVersion > since) {
+            out.put(WINNER).putShort((short) winners.length);
+            for (int player : winners)
+                out.putShort((short) player);
+        }
+        return version;
+    }
+}
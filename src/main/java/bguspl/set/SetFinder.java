@@ -0,0 +1,247 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set finding engine based on card completion.
+ * Any (setSize - 1) cards determine the single card that completes them to a legal set (if there is one), so instead
+ * of testing every setSize-combination of the given cards we only look the completing card up in a bitmap of the
+ * cards at hand. This turns the O(n^setSize) scan into an O(n^(setSize-1)) one (O(n^2) for the classic game).
+ * For the classic game (setSize == 3) the completions of all card pairs are precomputed once.
+ * Large collections of cards (e.g. the decks of generalized games) are searched on the common fork/join pool, each
+ * task taking the sets whose lowest card is in its range; once count sets are found all tasks stop.
+ *
+ * Note: only rules that can complete sets (see SetRule::canComplete) can be searched this way; the sets of other
+ * rules must be searched for by other means.
+ */
+class SetFinder {
+
+    /**
+     * The largest deck for which the pair completion table is precomputed (deckSize^2 ints).
+     */
+    private static final int MAX_PAIR_TABLE_DECK = 1024;
+
+    /**
+     * The smallest collection of cards searched in parallel, and the number of lowest cards searched by one task.
+     */
+    private static final int PARALLEL_MIN_CARDS = 256;
+    private static final int ROWS_PER_TASK = 4;
+
+    private final int deckSize;
+    private final int setSize;
+
+    /**
+     * The rule of the game (which completes the sets).
+     */
+    private final SetRule rule;
+
+    /**
+     * pairCompletion[a * deckSize + b] is the card that completes the set of a and b (null if not precomputed).
+     */
+    private final int[] pairCompletion;
+
+    /**
+     * Per thread working buffers, so searching does not allocate.
+     */
+    private final ThreadLocal<Scratch> scratch;
+
+    private final class Scratch {
+        final int[] cards = new int[deckSize];
+        final long[] present = new long[(deckSize >>> 6) + 1];
+        final int[] positions = new int[setSize - 1];
+        final int[] combination = new int[setSize - 1];
+    }
+
+    SetFinder(Config config, SetRule rule) {
+        if (!rule.canComplete())
+            throw new IllegalArgumentException("the set rule cannot complete sets");
+        deckSize = config.deckSize;
+        setSize = rule.size();
+        this.rule = rule;
+
+        if (setSize == 3 && deckSize <= MAX_PAIR_TABLE_DECK) {
+            pairCompletion = new int[deckSize * deckSize];
+            int[] pair = new int[2];
+            for (int a = 0; a < deckSize; ++a)
+                for (int b = 0; b < deckSize; ++b) {
+                    pair[0] = a;
+                    pair[1] = b;
+                    pairCompletion[a * deckSize + b] = rule.complete(pair, 2);
+                }
+        } else pairCompletion = null;
+
+        scratch = ThreadLocal.withInitial(Scratch::new);
+    }
+
+    /**
+     * Computes the card that completes the given setSize - 1 cards to a legal set (see Util::completeSet).
+     */
+    int completion(int[] cards) {
+        if (cards.length != setSize - 1)
+            throw new IllegalArgumentException("expected " + (setSize - 1) + " cards, got " + cards.length);
+        if (pairCompletion != null) return pairCompletion[cards[0] * deckSize + cards[1]];
+        return rule.complete(cards, cards.length);
+    }
+
+    /**
+     * Finds up to count legal sets in the given collection of cards (see Util::findSets).
+     * Large collections are searched in parallel (see PARALLEL_MIN_CARDS).
+     */
+    List<int[]> findSets(List<Integer> deck, int count) {
+        return findSets(deck, count, deck.size() >= PARALLEL_MIN_CARDS && ForkJoinPool.getCommonPoolParallelism() > 1);
+    }
+
+    /**
+     * Finds up to count legal sets in the given collection of cards, either on the calling thread or split by the
+     * lowest card of the sets across the common fork/join pool. Both find the same sets, though not in the same order.
+     */
+    List<int[]> findSets(List<Integer> deck, int count, boolean parallel) {
+        if (count <= 0) return new LinkedList<>();
+
+        Scratch s = scratch.get();
+        int n = deck.size();
+        int[] cards = s.cards;
+        long[] present = s.present;
+        for (int i = 0; i < n; ++i) {
+            int card = deck.get(i);
+            cards[i] = card;
+            present[card >>> 6] |= 1L << card;
+        }
+        Arrays.sort(cards, 0, n);
+
+        Found found = new Found(count);
+        try {
+            if (parallel) ForkJoinPool.commonPool().invoke(new Search(cards, n, present, found, 0, n));
+            else for (int i = 0; i < n && !found.done(); ++i)
+                searchRow(cards, n, present, i, s.positions, s.combination, found);
+        } finally {
+            for (int i = 0; i < n; ++i)
+                present[cards[i] >>> 6] = 0;
+        }
+        return new LinkedList<>(found.sets);
+    }
+
+    /**
+     * The sets found so far by (possibly several) searching threads, up to count of them. Once count sets are found
+     * the searches stop.
+     */
+    private static final class Found {
+        final int count;
+        final AtomicInteger claimed = new AtomicInteger();
+        final Queue<int[]> sets = new ConcurrentLinkedQueue<>();
+
+        Found(int count) {
+            this.count = count;
+        }
+
+        /**
+         * @return - true iff more sets should be searched for.
+         */
+        boolean add(int[] set) {
+            int index = claimed.getAndIncrement();
+            if (index < count) sets.add(set);
+            return index + 1 < count;
+        }
+
+        boolean done() {
+            return claimed.get() >= count;
+        }
+    }
+
+    /**
+     * Searches the sets whose lowest cards are cards[from..to) (halving the range down to ROWS_PER_TASK rows).
+     */
+    private final class Search extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] cards;
+        private final int n;
+        private final long[] present;
+        private final Found found;
+        private final int from;
+        private final int to;
+
+        Search(int[] cards, int n, long[] present, Found found, int from, int to) {
+            this.cards = cards;
+            this.n = n;
+            this.present = present;
+            this.found = found;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (found.done()) return;
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Search(cards, n, present, found, from, middle),
+                        new Search(cards, n, present, found, middle, to));
+                return;
+            }
+            int[] positions = new int[setSize - 1];
+            int[] combination = new int[setSize - 1];
+            for (int i = from; i < to && !found.done(); ++i)
+                searchRow(cards, n, present, i, positions, combination, found);
+        }
+    }
+
+    /**
+     * Searches the sets whose lowest card is cards[i].
+     *
+     * @return - false iff the search should stop (enough sets were found).
+     */
+    private boolean searchRow(int[] cards, int n, long[] present, int i, int[] positions, int[] combination,
+                              Found found) {
+        if (pairCompletion != null) return searchRowByPairs(cards, n, present, i, found);
+        return searchRowByCombinations(cards, n, present, i, positions, combination, found);
+    }
+
+    private boolean searchRowByPairs(int[] cards, int n, long[] present, int i, Found found) {
+        int a = cards[i], row = a * deckSize;
+        for (int j = i + 1; j < n; ++j) {
+            int b = cards[j];
+            int c = pairCompletion[row + b];
+            // each set is found once, from its two lowest cards
+            if (c > b && (present[c >>> 6] & (1L << c)) != 0 && !found.add(new int[]{a, b, c}))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean searchRowByCombinations(int[] cards, int n, long[] present, int i, int[] positions,
+                                            int[] combination, Found found) {
+        // the other setSize - 2 of the lowest setSize - 1 cards are chosen from the cards after cards[i]
+        int r = setSize - 1, k = r - 1;
+        if (n - i - 1 < k) return true;
+        combination[0] = cards[i];
+        for (int t = 0; t < k; ++t)
+            positions[t] = i + 1 + t;
+
+        while (true) {
+            for (int t = 0; t < k; ++t)
+                combination[t + 1] = cards[positions[t]];
+            int c = rule.complete(combination, r);
+            // each set is found once, from its lowest setSize - 1 cards
+            if (c > combination[r - 1] && (present[c >>> 6] & (1L << c)) != 0) {
+                int[] set = Arrays.copyOf(combination, setSize);
+                set[r] = c;
+                if (!found.add(set)) return false;
+            }
+
+            // generate next combination in lexicographic order
+            int t = k - 1;
+            while (t >= 0 && positions[t] == n - k + t) --t;
+            if (t < 0) return true;
+            positions[t]++;
+            for (int u = t + 1; u < k; u++) positions[u] = positions[u - 1] + 1;
+        }
+    }
+}
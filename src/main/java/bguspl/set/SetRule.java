@@ -0,0 +1,250 @@
+package bguspl.set;
+
+/**
+ * The rule deciding which cards form a legal set (see Config::setSize and Config::featureRules).
+ * A set is legal iff every feature satisfies its rule. The rule of each feature is compiled once into a predicate
+ * specialised for it: it reads the feature values from a per feature column (no feature arrays are built) and does not
+ * allocate. When every feature's rule determines the value the last card of a set must have, given the values of the
+ * other cards, the rule can also complete sets (see complete), which SetFinder uses to find sets quickly.
+ */
+public final class SetRule {
+
+    /**
+     * The rules a single feature may follow.
+     */
+    public enum FeatureRule {
+        /** all cards have the same value or all cards have different values (the classic game). */
+        CLASSIC,
+        /** all cards have the same value. */
+        SAME,
+        /** all cards have different values. */
+        DIFFERENT,
+        /** the sum of the values of the cards is divisible by the feature size. */
+        SUM,
+        /** the feature does not matter. */
+        ANY;
+
+        static FeatureRule parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("unknown feature rule: " + name);
+            }
+        }
+    }
+
+    /**
+     * Tests a single feature of some cards.
+     */
+    interface FeaturePredicate {
+        /**
+         * @param cards  - the card ids (only the first length entries are used).
+         * @param length - the number of cards.
+         * @return - true iff the feature of the cards satisfies the rule.
+         */
+        boolean test(int[] cards, int length);
+    }
+
+    /**
+     * Computes the value of a single feature of the card that completes some cards to a set.
+     */
+    interface FeatureCompletion {
+        /**
+         * @param cards  - the card ids (only the first length entries are used).
+         * @param length - the number of cards (setSize - 1).
+         * @return - the value, or -1 if there is none.
+         */
+        int complete(int[] cards, int length);
+    }
+
+    private final int featureSize;
+    private final int setSize;
+    private final FeatureRule[] rules;
+    private final FeaturePredicate[] predicates;
+
+    /**
+     * The completion of each feature (null if the rule cannot complete sets).
+     */
+    private final FeatureCompletion[] completions;
+
+    /**
+     * The place value of each feature in a card id (i.e. featureSize ^ (featureCount - 1 - feature)).
+     */
+    private final int[] weights;
+
+    /**
+     * @param config - the configuration (its feature rules and set size).
+     */
+    public SetRule(Config config) {
+        featureSize = config.featureSize;
+        setSize = config.setSize;
+        if (setSize < 2)
+            throw new IllegalArgumentException("a set must have at least 2 cards");
+        int featureCount = config.featureCount;
+
+        weights = new int[featureCount];
+        for (int i = featureCount - 1, weight = 1; i >= 0; --i, weight *= featureSize)
+            weights[i] = weight;
+
+        rules = new FeatureRule[featureCount];
+        predicates = new FeaturePredicate[featureCount];
+        FeatureCompletion[] completions = new FeatureCompletion[featureCount];
+        boolean completable = setSize >= 3 && featureSize <= Long.SIZE;
+        for (int i = 0; i < featureCount; ++i) {
+            rules[i] = FeatureRule.parse(config.featureRules[i]);
+            int[] column = new int[config.deckSize];
+            for (int card = 0; card < column.length; ++card)
+                column[card] = card / weights[i] % featureSize;
+            predicates[i] = compilePredicate(rules[i], column);
+            completions[i] = compileCompletion(rules[i], column);
+            completable &= completions[i] != null;
+        }
+        this.completions = completable ? completions : null;
+    }
+
+    private FeaturePredicate compilePredicate(FeatureRule rule, int[] column) {
+        int size = featureSize;
+        switch (rule) {
+            case CLASSIC:
+                if (setSize == 3)
+                    return (cards, length) -> {
+                        int a = column[cards[0]], b = column[cards[1]], c = column[cards[2]];
+                        return a == b ? b == c : a != c && b != c;
+                    };
+                return (cards, length) -> {
+                    int first = column[cards[0]];
+                    boolean same = true;
+                    long seen = 0;
+                    for (int j = 0; j < length; ++j) {
+                        int value = column[cards[j]];
+                        same &= value == first;
+                        seen |= 1L << value;
+                    }
+                    return same || Long.bitCount(seen) == length;
+                };
+            case SAME:
+                return (cards, length) -> {
+                    int first = column[cards[0]];
+                    for (int j = 1; j < length; ++j)
+                        if (column[cards[j]] != first) return false;
+                    return true;
+                };
+            case DIFFERENT:
+                return (cards, length) -> {
+                    long seen = 0;
+                    for (int j = 0; j < length; ++j)
+                        seen |= 1L << column[cards[j]];
+                    return Long.bitCount(seen) == length;
+                };
+            case SUM:
+                return (cards, length) -> {
+                    int sum = 0;
+                    for (int j = 0; j < length; ++j)
+                        sum += column[cards[j]];
+                    return sum % size == 0;
+                };
+            default:
+                return (cards, length) -> true;
+        }
+    }
+
+    /**
+     * @return - the completion of the rule, or null if the other cards do not determine the value of the last one.
+     */
+    private FeatureCompletion compileCompletion(FeatureRule rule, int[] column) {
+        int size = featureSize;
+        // all different values determine the last one only if the set takes every value
+        boolean allValues = setSize == featureSize;
+        switch (rule) {
+            case CLASSIC:
+            case DIFFERENT:
+                if (!allValues) return null;
+                boolean allowSame = rule == FeatureRule.CLASSIC;
+                return (cards, length) -> {
+                    int first = column[cards[0]];
+                    boolean same = true;
+                    long seen = 0;
+                    for (int j = 0; j < length; ++j) {
+                        int value = column[cards[j]];
+                        same &= value == first;
+                        seen |= 1L << value;
+                    }
+                    if (same && allowSame) return first;
+                    if (Long.bitCount(seen) == length) return Long.numberOfTrailingZeros(~seen); // the missing value
+                    return -1;
+                };
+            case SAME:
+                return (cards, length) -> {
+                    int first = column[cards[0]];
+                    for (int j = 1; j < length; ++j)
+                        if (column[cards[j]] != first) return -1;
+                    return first;
+                };
+            case SUM:
+                return (cards, length) -> {
+                    int sum = 0;
+                    for (int j = 0; j < length; ++j)
+                        sum += column[cards[j]];
+                    return (size - sum % size) % size;
+                };
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return - the number of cards in a set.
+     */
+    public int size() {
+        return setSize;
+    }
+
+    /**
+     * @return - true iff every feature follows the classic rule.
+     */
+    public boolean isClassic() {
+        for (FeatureRule rule : rules)
+            if (rule != FeatureRule.CLASSIC) return false;
+        return true;
+    }
+
+    /**
+     * @return - true iff the rule can complete sets (see complete).
+     */
+    public boolean canComplete() {
+        return completions != null;
+    }
+
+    /**
+     * Checks if an array of cards forms a legal set.
+     *
+     * @param cards - the card ids.
+     * @return - true iff there are setSize cards and every feature satisfies its rule.
+     */
+    public boolean test(int[] cards) {
+        if (cards.length != setSize) return false;
+        for (FeaturePredicate predicate : predicates)
+            if (!predicate.test(cards, setSize)) return false;
+        return true;
+    }
+
+    /**
+     * Computes the card that completes the given cards to a legal set.
+     *
+     * @param cards  - the card ids (only the first length entries are used).
+     * @param length - the number of cards (setSize - 1).
+     * @return - the completing card id, or -1 if the cards cannot be completed to a legal set.
+     * @throws UnsupportedOperationException - if the rule cannot complete sets (see canComplete).
+     */
+    public int complete(int[] cards, int length) {
+        if (completions == null)
+            throw new UnsupportedOperationException("the set rule cannot complete sets");
+        int card = 0;
+        for (int i = 0; i < completions.length; ++i) {
+            int value = completions[i].complete(cards, length);
+            if (value < 0 || value >= featureSize) return -1;
+            card += value * weights[i];
+        }
+        return card;
+    }
+}
@@ -0,0 +1,109 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+
+/**
+ * Plays headless games of computer players back to back, each on its own virtual clock, so the games run as fast
+ * as the dealer and the players can go rather than in real time (see Config::simulationGames).
+ */
+public class Simulator {
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+    private final UserInterface ui;
+
+    /**
+     * The number of games won by each player (a tie counts as a win for all tied players).
+     */
+    private final long[] wins;
+
+    /**
+     * The total score of each player over all the games.
+     */
+    private final long[] scores;
+
+    /**
+     * The total game time (on the virtual clocks) of all the games.
+     */
+    private long virtualMillis;
+
+    /**
+     * The name of the simulation (of the journals of its games, see Config::journalDirectory).
+     */
+    private final String name;
+
+    public Simulator(Logger logger, Config config, Util util) {
+        this.logger = logger;
+        this.config = config;
+        this.util = util;
+        ui = new UserInterfaceDecorator(logger, util, null);
+        wins = new long[config.players];
+        scores = new long[config.players];
+        name = Main.LOG_DATE_FORMAT.format(new Date());
+    }
+
+    /**
+     * Plays the games one after the other and prints out the results.
+     *
+     * @param games - the number of games to play.
+     */
+    public void run(int games) {
+        long start = System.nanoTime();
+        // with a configured shuffle seed the whole run (though not the timing of the players) is reproducible
+        SplittableRandom seeds = config.shuffleSeed != 0 ? new SplittableRandom(config.shuffleSeed) : new SplittableRandom();
+        for (int game = 0; game < games; ++game)
+            play(game, seeds.nextLong());
+        long realMillis = (System.nanoTime() - start) / 1000000L;
+
+        StringBuilder sb = new StringBuilder()
+                .append("Simulated ").append(games).append(" games in ").append(realMillis).append(" ms")
+                .append(" (").append(virtualMillis).append(" ms of game time)").append(System.lineSeparator());
+        for (int i = 0; i < config.players; ++i)
+            sb.append(config.playerNames[i]).append(": ").append(wins[i]).append(" wins, ")
+                    .append(String.format("%.2f", (double) scores[i] / games)).append(" points per game")
+                    .append(System.lineSeparator());
+        logger.severe(sb.toString());
+        System.out.print(sb);
+    }
+
+    /**
+     * Plays a single game (all players are computer players) and collects its results.
+     */
+    private void play(int game, long shuffleSeed) {
+        Clock clock = new VirtualClock();
+        GameJournal journal = FileGameJournal.open(name + "_game-" + game, logger, config, clock, shuffleSeed);
+        Env env = new Env(logger, config, ui, util, clock, journal);
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, shuffleSeed);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
+        dealerThread.startWithLog();
+        try {
+            dealerThread.joinWithLog();
+        } catch (InterruptedException e) {
+            dealer.terminate();
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            journal.close();
+        }
+
+        virtualMillis += clock.currentTimeMillis();
+        int max = Arrays.stream(players).mapToInt(Player::getScore).max().orElse(-1);
+        for (Player player : players) {
+            scores[player.id] += player.getScore();
+            if (player.getScore() == max) ++wins[player.id];
+        }
+    }
+}
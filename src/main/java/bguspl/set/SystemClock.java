@@ -0,0 +1,26 @@
+package bguspl.set;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * The real time clock (i.e. the system clock).
+ */
+public class SystemClock implements Clock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public void await(Condition condition, long millis) throws InterruptedException {
+        //noinspection ResultOfMethodCallIgnored
+        condition.await(millis, TimeUnit.MILLISECONDS);
+    }
+}
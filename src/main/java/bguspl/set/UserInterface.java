@@ -18,6 +18,25 @@ public interface UserInterface {
      */
     void removeCard(int slot);
 
+    /**
+     * Draw the card images corresponding to the card ids in the specified slots, as a single update of the display.
+     * @param cards - the card ids.
+     * @param slots - the slot numbers (respectively).
+     */
+    default void placeCards(int[] cards, int[] slots) {
+        for (int i = 0; i < slots.length; i++)
+            placeCard(cards[i], slots[i]);
+    }
+
+    /**
+     * Draw empty card images in the specified slots, as a single update of the display.
+     * @param slots - the slot numbers.
+     */
+    default void removeCards(int[] slots) {
+        for (int slot : slots)
+            removeCard(slot);
+    }
+
     /**
      * Draw a player name text in the specified slot.
      * @param player - the card id.
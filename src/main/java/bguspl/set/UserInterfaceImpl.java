@@ -160,6 +160,22 @@ public class UserInterfaceImpl extends JFrame implements UserInterface {
             repaint();
         }
 
+        private void placeCards(int[] cards, int[] slots) {
+            logger.log(Level.SEVERE, "placing cards " + Arrays.toString(cards) + " in slots " + Arrays.toString(slots));
+            for (int i = 0; i < slots.length; i++)
+                grid[slots[i] / config.columns][slots[i] % config.columns] = deck[cards[i]];
+            validate();
+            repaint();
+        }
+
+        private void removeCards(int[] slots) {
+            logger.log(Level.SEVERE, "removing cards from slots " + Arrays.toString(slots));
+            for (int slot : slots)
+                grid[slot / config.columns][slot % config.columns] = emptyCard;
+            validate();
+            repaint();
+        }
+
         private void placeToken(int player, int slot) {
             logger.log(Level.SEVERE, "player " + player + " placing token on slot " + slot);
             int row = slot / config.columns;
@@ -291,6 +307,16 @@ public class UserInterfaceImpl extends JFrame implements UserInterface {
         gamePanel.removeCard(slot);
     }
 
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        gamePanel.placeCards(cards, slots);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        gamePanel.removeCards(slots);
+    }
+
     public void setCountdown(long millies, boolean warn) {
         timerPanel.setCountdown(millies, warn);
     }
@@ -40,6 +40,16 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds the card that completes the given cards to a legal set (for games in which any set is determined by all
+     * but one of its cards).
+     *
+     * @param cards - the card ids of all but one of the cards of a set.
+     * @return - the card id that completes the set, or -1 if the cards cannot be completed to a legal set.
+     * @throws UnsupportedOperationException - if the set rule of the configuration cannot complete sets.
+     */
+    int completeSet(int[] cards);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
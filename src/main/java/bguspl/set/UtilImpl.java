@@ -13,8 +13,26 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The features of all cards in the deck (computed once).
+     */
+    private final CardFeatures features;
+
+    /**
+     * The rule of the game (see Config::featureRules).
+     */
+    private final SetRule rule;
+
+    /**
+     * The completion based set finder (null if the rule cannot complete sets, see SetFinder).
+     */
+    private final SetFinder finder;
+
     public UtilImpl(Config config) {
         this.config = config;
+        features = new CardFeatures(config);
+        rule = new SetRule(config);
+        finder = rule.canComplete() ? new SetFinder(config, rule) : null;
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -40,6 +58,15 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
+        // the classic rule is tested on the packed features, for any number of cards
+        if (rule.isClassic()) return features.testSet(cards);
+        return rule.test(cards);
+    }
+
+    /**
+     * Checks if an array of cards forms a legal set by comparing their features one by one (the reference rule).
+     */
+    boolean testSetByFeatures(int[] cards) {
         int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
@@ -66,9 +93,23 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        if (finder != null) return finder.findSets(deck, count);
+        return findSetsByTesting(deck, count);
+    }
+
+    @Override
+    public int completeSet(int[] cards) {
+        if (finder == null) throw new UnsupportedOperationException("the set rule cannot complete sets");
+        return finder.completion(cards);
+    }
+
+    /**
+     * Finds sets by testing every combination of cards (used when there is no finder for this configuration).
+     */
+    List<int[]> findSetsByTesting(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
-        int r = config.featureSize;
+        int r = config.setSize;
         int[] combination = new int[r];
 
         for (int i = 0; i < r; ++i)
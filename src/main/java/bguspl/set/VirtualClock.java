@@ -0,0 +1,63 @@
+package bguspl.set;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * A virtual clock for headless simulations, in which pausing advances the time instead of waiting for it.
+ * The clock only moves forward: pausing until some point in time moves it to that point unless it is already past it,
+ * so threads pausing concurrently (e.g. the dealer and the computer players) overlap rather than add up.
+ * Waiting on a condition still releases its lock for up to a real millisecond, to let the other threads act (e.g. claim a
+ * set) between the steps of the waiting thread, and moves the clock to its deadline only if it is not signalled meanwhile.
+ */
+public class VirtualClock implements Clock {
+
+    private final AtomicLong now;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    public VirtualClock(long startMillis) {
+        now = new AtomicLong(startMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now.get();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        advance(millis);
+        if (Thread.interrupted()) throw new InterruptedException();
+        Thread.yield();
+    }
+
+    /**
+     * The clock is moved to the deadline only if the wait times out: a waiter signalled before (e.g. by a claim) leaves
+     * the clock where it is, just as the system clock would not have reached the deadline either.
+     */
+    @Override
+    public void await(Condition condition, long millis) throws InterruptedException {
+        long deadline = now.get() + Math.max(millis, 0);
+        if (!condition.await(1, TimeUnit.MILLISECONDS))
+            advanceTo(deadline);
+    }
+
+    /**
+     * Moves the clock forward to the specified time (unless it is already past it).
+     *
+     * @param millis - the time to move to.
+     */
+    public void advanceTo(long millis) {
+        now.accumulateAndGet(millis, Math::max);
+    }
+
+    private void advance(long millis) {
+        if (millis <= 0) return;
+        long target = now.get() + millis;
+        now.accumulateAndGet(target, Math::max);
+    }
+}
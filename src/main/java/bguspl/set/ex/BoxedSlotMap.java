@@ -0,0 +1,61 @@
+package bguspl.set.ex;
+
+/**
+ * A slot map over boxed arrays (null meaning none) owned by the caller, who may also change them directly (e.g. a
+ * test setting up the table). Nothing is maintained besides the arrays, so counting scans them.
+ */
+class BoxedSlotMap implements SlotMap {
+
+    private final Integer[] slotToCard;
+    private final Integer[] cardToSlot;
+
+    BoxedSlotMap(Integer[] slotToCard, Integer[] cardToSlot) {
+        this.slotToCard = slotToCard;
+        this.cardToSlot = cardToSlot;
+    }
+
+    @Override
+    public int cardAt(int slot) {
+        Integer card = slotToCard[slot];
+        return card == null ? -1 : card;
+    }
+
+    @Override
+    public int slotOf(int card) {
+        Integer slot = cardToSlot[card];
+        return slot == null ? -1 : slot;
+    }
+
+    @Override
+    public void put(int card, int slot) {
+        if (slotToCard[slot] != null) remove(slot);
+        slotToCard[slot] = card;
+        cardToSlot[card] = slot;
+    }
+
+    @Override
+    public int remove(int slot) {
+        Integer card = slotToCard[slot];
+        if (card == null) return -1;
+        cardToSlot[card] = null;
+        slotToCard[slot] = null;
+        return card;
+    }
+
+    @Override
+    public int count() {
+        int cards = 0;
+        for (Integer card : slotToCard)
+            if (card != null)
+                ++cards;
+        return cards;
+    }
+
+    @Override
+    public int nextEmpty(int from) {
+        for (int slot = from; slot < slotToCard.length; slot++)
+            if (slotToCard[slot] == null)
+                return slot;
+        return -1;
+    }
+}
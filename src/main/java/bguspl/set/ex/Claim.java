@@ -0,0 +1,52 @@
+package bguspl.set.ex;
+
+/**
+ * A player's claim for a set: a snapshot of the slots the player's tokens were on and of the cards in them, taken by
+ * the claiming player, along with the verdict of the set test (also computed by the claiming player).
+ */
+final class Claim implements Comparable<Claim> {
+
+    /**
+     * The claiming player.
+     */
+    final int player;
+
+    /**
+     * The slots of the claim and the cards that were in them (-1 for an empty slot) when the claim was made.
+     */
+    final int[] slots;
+    final int[] cards;
+
+    /**
+     * True iff the cards form a legal set.
+     */
+    final boolean legal;
+
+    /**
+     * The order in which the claim was made (among all claims of the game).
+     */
+    final long sequence;
+
+    /**
+     * The stamps of the key press that placed the last token of the claim, of the claim and of the dealer taking the
+     * claim (0 if not stamped, see bguspl.set.LatencyMetrics).
+     */
+    final long pressedAt;
+    final long claimedAt;
+    long takenAt;
+
+    Claim(int player, int[] slots, int[] cards, boolean legal, long sequence, long pressedAt, long claimedAt) {
+        this.player = player;
+        this.slots = slots;
+        this.cards = cards;
+        this.legal = legal;
+        this.sequence = sequence;
+        this.pressedAt = pressedAt;
+        this.claimedAt = claimedAt;
+    }
+
+    @Override
+    public int compareTo(Claim other) {
+        return Long.compare(sequence, other.sequence);
+    }
+}
@@ -0,0 +1,38 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+/**
+ * The strategy of a computer player: decides which keys the player presses next.
+ * The player's AI thread asks its strategy for keys whenever the player can play (i.e. it is neither frozen nor
+ * waiting for the verdict on a claim), and presses them in order.
+ */
+public interface ComputerStrategy {
+
+    /**
+     * Decides on the next keys to press, blocking while there is nothing to do.
+     *
+     * @return - the slots corresponding to the keys to press, in order.
+     * @throws InterruptedException - if interrupted while waiting (i.e. the game is terminating).
+     */
+    int[] nextKeys() throws InterruptedException;
+
+    /**
+     * Creates the strategy configured for the computer players (see Config::computerStrategy).
+     *
+     * @param env    - the environment object.
+     * @param table  - the table object.
+     * @param player - the id of the computer player.
+     * @return - the strategy.
+     */
+    static ComputerStrategy create(Env env, Table table, int player) {
+        switch (env.config.computerStrategy) {
+            case "solver":
+                return new SolverStrategy(env, table, player);
+            case "random":
+                return new RandomStrategy(env);
+            default:
+                throw new IllegalArgumentException("unknown computer strategy: " + env.config.computerStrategy);
+        }
+    }
+}
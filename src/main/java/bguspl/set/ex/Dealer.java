@@ -1,12 +1,16 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.GameThreads;
+import bguspl.set.LatencyMetrics;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * This class manages the dealer's threads and data
@@ -25,9 +29,24 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
+
+    /**
+     * The seed of the random generator that shuffles the deck.
+     */
+    private final long shuffleSeed;
+
+    /**
+     * The sets left in the game (see LiveSets).
+     */
+    private final LiveSets liveSets;
+
+    /**
+     * The snapshot the game is checkpointed to and resumed from (null if none, see GameSnapshot).
+     */
+    private final GameSnapshot snapshot;
 
     /**
      * True iff game should be terminated due to an external event.
@@ -39,19 +58,80 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
-    private ConcurrentLinkedQueue<Integer> playerWithSet;
+    /**
+     * The claims made by the players and not handled yet (validated by the claiming players).
+     */
+    private final ConcurrentLinkedQueue<Claim> claims;
+
+    /**
+     * The claims handled in a single batch (see checkSet), and the number of claims made so far.
+     */
+    private final List<Claim> claimsBatch;
+    private final AtomicLong claimSequence;
 
     private Thread[] playersThreads;
 
+    /**
+     * The lock the dealer sleeps with, and the condition signalled to wake it up (see wakeUp).
+     */
+    private final ReentrantLock sleepLock = new ReentrantLock();
+    private final Condition woken = sleepLock.newCondition();
+
+    /**
+     * The action that wakes up a dealer that does not sleep on its own thread (null if it does, see setWaker).
+     */
+    private volatile Runnable waker;
+
     private long[] playersFreezeTimes;
 
+    /**
+     * The time of the next freeze display update (or freeze expiry) of any player.
+     */
+    private long nextFreezeUpdate = Long.MAX_VALUE;
+
+    /**
+     * The number of milliseconds between countdown display updates during the turn timeout warning.
+     */
+    private static final long WARNING_TICK_MILLIS = 10;
+
+    /**
+     * The number of milliseconds between wake ups of the polling dealer (see Config::pollingDealer).
+     */
+    private static final long POLLING_MILLIS = 50;
+
+    /**
+     * The number of times the dealer woke up, and the time the game started (for statistics).
+     */
+    private long wakeups;
+    private long startTime;
+
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, env.config.shuffleSeed != 0 ? env.config.shuffleSeed : new SplittableRandom().nextLong());
+    }
+
+    /**
+     * @param shuffleSeed - the seed of the random generator that shuffles the deck.
+     */
+    public Dealer(Env env, Table table, Player[] players, long shuffleSeed) {
+        this(env, table, players, shuffleSeed, null);
+    }
+
+    /**
+     * @param shuffleSeed - the seed of the random generator that shuffles the deck.
+     * @param snapshot    - the snapshot to resume the game from (if it holds one) and to checkpoint it to, or null.
+     */
+    public Dealer(Env env, Table table, Player[] players, long shuffleSeed, GameSnapshot snapshot) {
         this.env = env;
+        this.snapshot = snapshot;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-        playerWithSet = new ConcurrentLinkedQueue<>();
-        reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+        this.shuffleSeed = shuffleSeed;
+        deck = new Deck(env.config.deckSize, new SplittableRandom(shuffleSeed));
+        liveSets = new LiveSets(env.util, env.config.deckSize, env.config.setSize);
+        claims = new ConcurrentLinkedQueue<>();
+        claimsBatch = new ArrayList<>();
+        claimSequence = new AtomicLong();
+        reshuffleTime = env.clock.currentTimeMillis() + env.config.turnTimeoutMillis;
         playersFreezeTimes = new long[env.config.players];
        /* if(env.config.turnTimeoutMillis > 0){
             reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
@@ -70,21 +150,51 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
+        boolean resumed = begin();
+        while (!shouldFinish()) {
+            if(resumed)
+                resumed = false;
+            else
+                startRound();
+            checkpoint();
+            timerLoop();
+            endRound();
+        }
+        finish();
+        env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+    }
+
+    /**
+     * Starts the game: resumes it from the snapshot (if any) and starts the players.
+     *
+     * @return true iff the game was resumed (so its first round is already dealt).
+     */
+    boolean begin() {
+        startTime = env.clock.currentTimeMillis();
+        env.logger.log(Level.INFO, "shuffle seed: " + shuffleSeed);
+        // the state of a resumed game is restored before the players start
+        boolean resumed = resume();
         playersThreads = new Thread[env.config.players];
         for(int i=0; i<playersThreads.length;i++){
-            playersThreads[i] = new Thread(players[i], "player "+i+" Thread ");
+            playersThreads[i] = GameThreads.newThread(env, players[i], "player "+i+" Thread ");
             playersThreads[i].start();
         }
-        while (!shouldFinish()) {
-            shuffleDeck();
-            placeCardsOnTable();
-            updateTimerDisplay(true);
-            timerLoop();
-            updateTimerDisplay(true);
-            removeAllCardsFromTable();
-        }
-        if(!terminate)
+        // from now on the players only stop to wait for the verdict on their claims (see checkSet)
+        resumePlay();
+        return resumed;
+    }
+
+    /**
+     * Ends the game: announces the winners (unless the game was terminated) and stops the players.
+     */
+    void finish() {
+        stopPlay();
+        if(!terminate){
             announceWinners();
+            // a game that is over is not resumed (one that was terminated is)
+            if(snapshot != null)
+                snapshot.clear();
+        }
         for(Player player: players){
             player.terminate();
         }
@@ -93,30 +203,162 @@ public class Dealer implements Runnable {
                 t.join();
             } catch (InterruptedException e) {}
         }
-        env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+        env.logger.log(Level.INFO, countSetsLeft() + " sets left in the game.");
+        env.logger.log(Level.INFO, "dealer woke up " + wakeups + " times (" + String.format("%.2f", getWakeupsPerSecond()) + " per second).");
     }
 
     /**
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
-            resumePlay();
+        while (roundGoesOn()) {
             sleepUntilWokenOrTimeout();
-            updateTimerDisplay(false);
-            updatePlayersFreezeTime();
-            stopPlay();
-            checkSet();
-            placeCardsOnTable();
+            tick();
+            checkpoint();
+        }
+    }
+
+    /**
+     * Shuffles the deck and deals a new table.
+     */
+    void startRound() {
+        shuffleDeck();
+        placeCardsOnTable();
+        updateTimerDisplay(true);
+    }
+
+    /**
+     * @return true iff the current round should go on: the countdown did not time out and there is a set on the table
+     * (a table without sets is reshuffled right away rather than at the turn timeout).
+     */
+    boolean roundGoesOn() {
+        return !terminate && env.clock.currentTimeMillis() < reshuffleTime && table.hasSet();
+    }
+
+    /**
+     * Handles the events due when the dealer wakes up during a round.
+     */
+    void tick() {
+        updateTimerDisplay(false);
+        updatePlayersFreezeTime();
+        checkSet();
+        placeCardsOnTable();
+    }
+
+    /**
+     * Saves the state of the game to the snapshot (if any), between the dealer's ticks. The players are not stopped:
+     * the dealer owns the deck, the scores and the deadlines, and the cards and the tokens are read without locking.
+     * A player may move a token meanwhile, so the tokens saved may be a little newer than the rest of the state.
+     */
+    void checkpoint() {
+        if(snapshot == null)
+            return;
+        long now = env.clock.currentTimeMillis();
+        snapshot.reshuffleLeft = reshuffleTime - now;
+        snapshot.deckCount = deck.copyTo(snapshot.deck);
+        table.snapshot(snapshot.cards);
+        table.copyTokens(snapshot.tokens);
+        // a token placed on a card the snapshot of the cards missed is not saved
+        for(int player = 0; player < players.length; player++)
+            for(int slot = 0; slot < snapshot.cards.length; slot++)
+                if(snapshot.cards[slot] == -1)
+                    snapshot.tokens[player * snapshot.slotWords() + (slot >>> 6)] &= ~(1L << slot);
+        for(int player = 0; player < players.length; player++){
+            snapshot.scores[player] = players[player].getScore();
+            snapshot.freezeLeft[player] = players[player].isFreeze() ? Math.max(0, playersFreezeTimes[player] - now) : -1;
+        }
+        snapshot.save();
+    }
+
+    /**
+     * Restores the state of the game saved in the snapshot (if any): the deck, the cards and the tokens on the table,
+     * the scores, the freezes of the players and the countdown, all as they were at the last checkpoint.
+     * The shuffles after the game is resumed do not follow the shuffle seed of the game any more.
+     *
+     * @return true iff a game was resumed.
+     */
+    boolean resume() {
+        if(snapshot == null || !snapshot.load())
+            return false;
+        deck.restore(snapshot.deck, snapshot.deckCount);
+        int[] slots = new int[snapshot.cards.length];
+        int[] cards = new int[snapshot.cards.length];
+        int count = 0;
+        boolean[] inGame = new boolean[env.config.deckSize];
+        for(int i = 0; i < snapshot.deckCount; i++)
+            inGame[snapshot.deck[i]] = true;
+        for(int slot = 0; slot < snapshot.cards.length; slot++)
+            if(snapshot.cards[slot] != -1){
+                inGame[snapshot.cards[slot]] = true;
+                slots[count] = slot;
+                cards[count++] = snapshot.cards[slot];
+            }
+        for(int card = 0; card < inGame.length; card++)
+            if(!inGame[card])
+                liveSets.take(card);
+        table.placeCards(Arrays.copyOf(cards, count), Arrays.copyOf(slots, count));
+        for(int player = 0; player < players.length; player++)
+            for(int slot = 0; slot < snapshot.cards.length; slot++)
+                if((snapshot.tokens[player * snapshot.slotWords() + (slot >>> 6)] & (1L << slot)) != 0)
+                    table.placeToken(player, slot);
+
+        long now = env.clock.currentTimeMillis();
+        for(int player = 0; player < players.length; player++){
+            players[player].restore(snapshot.scores[player], snapshot.freezeLeft[player] >= 0);
+            if(snapshot.freezeLeft[player] >= 0){
+                playersFreezeTimes[player] = now + snapshot.freezeLeft[player];
+                nextFreezeUpdate = now;
+            }
         }
+        reshuffleTime = now + snapshot.reshuffleLeft;
+        updateTimerDisplay(false);
+        env.logger.log(Level.INFO, "resumed a game with " + count + " cards on the table and " + snapshot.deckCount + " in the deck.");
+        return true;
+    }
+
+    /**
+     * Returns all the cards on the table to the deck.
+     */
+    void endRound() {
+        updateTimerDisplay(true);
+        removeAllCardsFromTable();
     }
 
     /**
      * Called when the game should be terminated due to an external event.
      */
     public void terminate() {
-        // TODO implement
         terminate = true;
+        wakeUp();
+    }
+
+    /**
+     * Wakes the dealer up if it sleeps (e.g. when a player claimed a set).
+     */
+    public void wakeUp() {
+        sleepLock.lock();
+        try {
+            woken.signalAll();
+        } finally {
+            sleepLock.unlock();
+        }
+        Runnable waker = this.waker;
+        if(waker != null)
+            waker.run();
+    }
+
+    /**
+     * Sets the action that wakes up a dealer that does not sleep on its own thread (see ScheduledDealer).
+     */
+    void setWaker(Runnable waker) {
+        this.waker = waker;
+    }
+
+    /**
+     * @return true iff the game was terminated due to an external event.
+     */
+    public boolean isTerminated() {
+        return terminate;
     }
 
     /**
@@ -124,52 +366,189 @@ public class Dealer implements Runnable {
      *
      * @return true iff the game should be finished.
      */
-    private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+    boolean shouldFinish() {
+        return terminate || !hasSetsLeft();
+    }
+
+    /**
+     * @return true iff there is a legal set among the cards left in the game (in the deck or on the table).
+     */
+    public boolean hasSetsLeft() {
+        if(liveSets.isEnabled())
+            return liveSets.countSets() > 0;
+        return !env.util.findSets(getLiveCards(), 1).isEmpty();
+    }
+
+    /**
+     * @return the number of legal sets among the cards left in the game (in the deck or on the table).
+     */
+    public int countSetsLeft() {
+        if(liveSets.isEnabled())
+            return liveSets.countSets();
+        return env.util.findSets(getLiveCards(), Integer.MAX_VALUE).size();
+    }
+
+    /**
+     * @return the cards left in the game (used when the live sets are not tracked).
+     */
+    private List<Integer> getLiveCards() {
+        List<Integer> cards = new ArrayList<>(deck.asList());
+        int[] onTable = new int[env.config.tableSize];
+        table.snapshot(onTable);
+        for(int card: onTable)
+            if(card != -1)
+                cards.add(card);
+        return cards;
     }
 
     /**
      * Checks cards should be removed from the table and removes them.
+     * All the claims made since the last check are handled in one batch, in the order they were made. A claim whose
+     * cards or tokens are no longer on the table (i.e. an earlier claim took some of its cards) is void: it gets no
+     * point and no penalty. The claiming players are blocked until their claims are handled here.
      */
-    private void checkSet() {
-        // TODO implement
-        if(!playerWithSet.isEmpty()) {
-            Integer playerId = playerWithSet.remove();
-            List<Integer> set = table.getSetAsSlots(playerId);
-            int[] setAsArray = table.getSetAsCards(playerId);
-            if(set.size() == 3 && setAsArray.length ==3){
+    void checkSet() {
+        if(claimsBatch.isEmpty())
+            takeClaims();
+        if(claimsBatch.isEmpty())
+            return;
+        Collections.sort(claimsBatch);
+
+        for(Claim claim: claimsBatch){
+            int playerId = claim.player;
+            long handledAt = env.metrics.now();
+            env.metrics.record(LatencyMetrics.Stage.DEALER_PICKUP, claim.takenAt, handledAt);
+            if(isCurrent(claim)){
                 //if the set is correct
-                if(env.util.testSet(setAsArray)){
+                if(claim.legal){
                     updateTimerDisplay(true);
-                    for(Integer slot: set){
-                        table.removeCard(slot);
-                        /*for(Player player: players){
-                            table.removeToken(player.id, slot);
-                        }*/
-                        table.removeTokensFromSlot(slot);
+                    // the players see the three cards (and the tokens on them) go at once
+                    table.lockSlots(claim.slots);
+                    try {
+                        for(int card: table.removeCards(claim.slots))
+                            liveSets.take(card);
+                        for(int slot: claim.slots)
+                            table.removeTokensFromSlot(slot);
+                    } finally {
+                        table.unlockSlots(claim.slots);
                     }
                     //freeze and increment score
+                    env.journal.record(GameJournal.Event.VERDICT, playerId, -1, -1, GameJournal.VERDICT_POINT);
+                    long verdictAt = recordVerdict(handledAt);
                     players[playerId].point();
                     freezePlayer(playerId, env.config.pointFreezeMillis);
+                    recordUpdate(claim, verdictAt);
                 }
                 //false set
                 else{
                     //penalty time
+                    env.journal.record(GameJournal.Event.VERDICT, playerId, -1, -1, GameJournal.VERDICT_PENALTY);
+                    long verdictAt = recordVerdict(handledAt);
                     players[playerId].penalty();
                     freezePlayer(playerId, env.config.penaltyFreezeMillis);
+                    recordUpdate(claim, verdictAt);
                 }
             }
+            else{
+                env.journal.record(GameJournal.Event.VERDICT, playerId, -1, -1, GameJournal.VERDICT_VOID);
+                recordVerdict(handledAt);
+            }
+            players[playerId].resumePlay();
+        }
+        claimsBatch.clear();
+    }
+
+    /**
+     * Records the validation of a claim whose handling started at handledAt.
+     *
+     * @return - the stamp of the verdict.
+     */
+    private long recordVerdict(long handledAt){
+        long verdictAt = env.metrics.now();
+        env.metrics.record(LatencyMetrics.Stage.VALIDATION, handledAt, verdictAt);
+        return verdictAt;
+    }
+
+    /**
+     * Records the update of the score or the freeze of the claiming player after the verdict, and the whole way from
+     * the key press of the claim.
+     */
+    private void recordUpdate(Claim claim, long verdictAt){
+        long updatedAt = env.metrics.now();
+        env.metrics.record(LatencyMetrics.Stage.UI_UPDATE, verdictAt, updatedAt);
+        env.metrics.record(LatencyMetrics.Stage.KEY_TO_VERDICT, claim.pressedAt, updatedAt);
+    }
+
+    /**
+     * Takes the claims made so far into the batch handled by checkSet.
+     */
+    void takeClaims() {
+        int first = claimsBatch.size();
+        for(Claim claim = claims.poll(); claim != null; claim = claims.poll())
+            claimsBatch.add(claim);
+        claimsTaken(first);
+    }
+
+    /**
+     * Takes the claims with the given sequence numbers into the batch handled by checkSet, leaving the other claims
+     * made so far for a later batch (a replay takes the recorded batches ahead of checkSet, see Replay).
+     */
+    void takeClaims(long[] sequences) {
+        int first = claimsBatch.size();
+        for(Iterator<Claim> iterator = claims.iterator(); iterator.hasNext(); ){
+            Claim claim = iterator.next();
+            for(long sequence: sequences)
+                if(claim.sequence == sequence){
+                    iterator.remove();
+                    claimsBatch.add(claim);
+                    break;
+                }
+        }
+        claimsTaken(first);
+    }
+
+    /**
+     * Records the claims taken into the batch from the given index on. The journal shows the sequence number of each
+     * claim of the batch, so a replay can take the same claims (the claims made meanwhile may be queued in any order).
+     */
+    private void claimsTaken(int first){
+        List<Claim> taken = claimsBatch.subList(first, claimsBatch.size());
+        Collections.sort(taken);
+        long now = env.metrics.now();
+        for(Claim claim: taken){
+            env.metrics.record(LatencyMetrics.Stage.CLAIM_QUEUE, claim.claimedAt, now);
+            claim.takenAt = now;
+            env.journal.record(GameJournal.Event.CLAIMS_TAKEN, claim.player, (int) claim.sequence, -1, taken.size());
         }
     }
 
+    /**
+     * @return true iff the claim is complete and its cards and tokens are still on the table.
+     */
+    private boolean isCurrent(Claim claim){
+        if(claim.slots.length != env.config.setSize)
+            return false;
+        int[] cards = table.getCards(claim.slots);
+        for(int i = 0; i < cards.length; i++)
+            if(cards[i] == -1 || cards[i] != claim.cards[i] || !table.checkToken(claim.player, claim.slots[i]))
+                return false;
+        return true;
+    }
+
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     public void placeCardsOnTable() {
-        List<Integer> emptySlots = table.getEmptySlots();
-        while(!deck.isEmpty() && !emptySlots.isEmpty()){
-                table.placeCard(deck.remove(0), emptySlots.remove(0));
+        int count = Math.min(env.config.tableSize - table.countCards(), deck.size());
+        int[] cards = new int[count];
+        int[] slots = new int[count];
+        int i = 0;
+        for(int slot = table.nextEmptySlot(0); slot != -1 && i < count; slot = table.nextEmptySlot(slot + 1)){
+            cards[i] = deck.draw();
+            slots[i++] = slot;
         }
+        // all the cards are dealt at once
+        table.placeCards(i == count ? cards : Arrays.copyOf(cards, i), i == count ? slots : Arrays.copyOf(slots, i));
     }
 
     private void stopPlay(){
@@ -178,34 +557,101 @@ public class Dealer implements Runnable {
         }
     }
 
-    private void resumePlay(){
+    void resumePlay(){
         for(Player player: players){
             player.resumePlay();
         }
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until the next event the dealer has to handle, or until the thread is awakened for some purpose
+     * (i.e. a player claimed a set or the game was terminated).
      */
     private void sleepUntilWokenOrTimeout() {
-        // TODO implement
-        synchronized (this){
-            try {
-                if(reshuffleTime - System.currentTimeMillis() >= env.config.turnTimeoutWarningMillis + 1000)
-                    wait(50);
-            }
-            catch(InterruptedException ex){}
+        sleepLock.lock();
+        try {
+            long now = env.clock.currentTimeMillis();
+            long wakeTime = nextWakeTime(now);
+            if (!terminate && claims.isEmpty() && wakeTime > now)
+                env.clock.await(woken, wakeTime - now);
+        }
+        catch(InterruptedException ex){}
+        finally {
+            sleepLock.unlock();
         }
+        wokeUp();
+    }
+
+    /**
+     * Counts a wake up of the dealer (for statistics).
+     */
+    void wokeUp() {
+        ++wakeups;
+    }
+
+    /**
+     * @return the time the dealer should wake up next (unless woken earlier by a claim).
+     */
+    long nextWakeTime(long now) {
+        return env.config.pollingDealer ? nextPollTime(now) : nextEventTime(now);
+    }
+
+    /**
+     * @return true iff there are claims the dealer did not handle yet (which wake the dealer up).
+     */
+    boolean hasClaims() {
+        return !claims.isEmpty() || !claimsBatch.isEmpty();
+    }
+
+    /**
+     * @return the time of the next wake up of a dealer that polls rather than sleeping until its next event.
+     */
+    private long nextPollTime(long now) {
+        if(reshuffleTime - now >= env.config.turnTimeoutWarningMillis + 1000)
+            return now + POLLING_MILLIS;
+        return now + WARNING_TICK_MILLIS;
+    }
+
+    /**
+     * @return the time of the next event the dealer has to handle: the reshuffle, a countdown display update or a
+     * freeze display update (a freeze expiry is the last of these).
+     */
+    private long nextEventTime(long now) {
+        long timeLeft = reshuffleTime - now;
+        long next = Math.min(reshuffleTime, nextFreezeUpdate);
+        if (timeLeft <= env.config.turnTimeoutWarningMillis)
+            next = Math.min(next, now + WARNING_TICK_MILLIS);
+        else
+            next = Math.min(next, Math.min(now + untilNextSecond(timeLeft), reshuffleTime - env.config.turnTimeoutWarningMillis));
+        return next;
+    }
+
+    /**
+     * @return the number of milliseconds until the number of whole seconds displayed for millisLeft changes.
+     */
+    private static long untilNextSecond(long millisLeft) {
+        return millisLeft - ((millisLeft - 1) / 1000) * 1000;
+    }
+
+    /**
+     * @return the number of times the dealer woke up per second of game time (so far).
+     */
+    public double getWakeupsPerSecond() {
+        long elapsed = env.clock.currentTimeMillis() - startTime;
+        return elapsed > 0 ? wakeups * 1000.0 / elapsed : 0;
+    }
+
+    public long getWakeups() {
+        return wakeups;
     }
 
     /**
      * Reset and/or update the countdown and the countdown display.
      */
     private void updateTimerDisplay(boolean reset) {
-        // TODO implement
         if (reset)
-            reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-        long timeLeft = reshuffleTime - System.currentTimeMillis();
+            reshuffleTime = env.clock.currentTimeMillis() + env.config.turnTimeoutMillis;
+        long timeLeft = reshuffleTime - env.clock.currentTimeMillis();
         env.ui.setCountdown(timeLeft, timeLeft <= env.config.turnTimeoutWarningMillis);
     }
 
@@ -213,21 +659,20 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        // TODO implement
-        Integer[] cards = table.removeAllCardsAndReturn();
-        deck.addAll(Arrays.asList(cards));
+        for(int card: table.removeAllCardsAndReturn())
+            deck.add(card);
         table.clearAllTokens();
     }
 
     private void shuffleDeck(){
-        Collections.shuffle(deck);
+        deck.shuffle();
+        env.journal.record(GameJournal.Event.RESHUFFLE, -1, -1, -1, deck.size());
     }
 
     /**
      * Check who is/are the winner/s and displays them.
      */
     private void announceWinners() {
-        // TODO implement
         int max = Arrays.stream(players)
                         .mapToInt(Player::getScore)
                         .max()
@@ -239,24 +684,63 @@ public class Dealer implements Runnable {
         env.ui.announceWinner(maxPlayers);
     }
 
+    /**
+     * Called by a player (on its own thread) that placed its third token: snapshots the cards of the claim, tests
+     * them and queues the claim for the dealer. The player should then block until the dealer handles the claim.
+     */
     public void enterPlayerWithSet(int playerId){
-        playerWithSet.add(playerId);
+        enterPlayerWithSet(playerId, 0);
     }
 
+    /**
+     * Same as enterPlayerWithSet(playerId), for a claim whose last token was placed by a key press stamped at
+     * pressedAt (see bguspl.set.LatencyMetrics).
+     */
+    void enterPlayerWithSet(int playerId, long pressedAt){
+        long claimedAt = env.metrics.now();
+        int[] slots = table.getTokenSlots(playerId);
+        int[] cards = table.getCards(slots);
+        boolean legal = slots.length == env.config.setSize && Arrays.stream(cards).allMatch(card -> card != -1) && env.util.testSet(cards);
+        long sequence = claimSequence.getAndIncrement();
+        // the claim is journaled before it is queued, so the journal shows it before the batch that takes it
+        env.journal.record(GameJournal.Event.CLAIM, playerId, (int) sequence, -1, legal ? 1 : 0);
+        claims.add(new Claim(playerId, slots, cards, legal, sequence, pressedAt, claimedAt));
+    }
+
+    /**
+     * Sets the sequence number of the next claim (a replay numbers its claims as recorded, see Replay).
+     */
+    void setClaimSequence(long sequence){
+        claimSequence.set(sequence);
+    }
+
+    /**
+     * Updates the freeze display of the frozen players and unfreezes the players whose freeze expired (only when
+     * any of these is due).
+     */
     private void updatePlayersFreezeTime(){
-        int index = 0;
-        for(long freezeTime: playersFreezeTimes){
-            long freezeTimeLeft = freezeTime - System.currentTimeMillis();
-            if(players[index].isFreeze() && freezeTimeLeft <= 0)
+        long now = env.clock.currentTimeMillis();
+        if(now < nextFreezeUpdate)
+            return;
+        nextFreezeUpdate = Long.MAX_VALUE;
+        for(int index = 0; index < playersFreezeTimes.length; index++){
+            if(!players[index].isFreeze())
+                continue;
+            long freezeTimeLeft = playersFreezeTimes[index] - now;
+            if(freezeTimeLeft <= 0)
                 removeFreezePlayer(index);
+            else
+                nextFreezeUpdate = Math.min(nextFreezeUpdate, now + untilNextSecond(freezeTimeLeft));
             env.ui.setFreeze(index, freezeTimeLeft);
-            index++;
         }
     }
 
     public void freezePlayer(int playerId, long millisFreeze){
         players[playerId].freezePlay();
-        playersFreezeTimes[playerId] = System.currentTimeMillis() + millisFreeze;
+        long now = env.clock.currentTimeMillis();
+        playersFreezeTimes[playerId] = now + millisFreeze;
+        env.journal.record(GameJournal.Event.FREEZE, playerId, -1, -1, (int) millisFreeze);
+        nextFreezeUpdate = now;
     }
 
     public void removeFreezePlayer(int playerId){
@@ -265,7 +749,11 @@ public class Dealer implements Runnable {
 
     public List<Integer> getDeck(){
         // for testing
-        return deck;
+        return deck.asList();
+    }
+
+    public long getShuffleSeed() {
+        return shuffleSeed;
     }
 
 }
@@ -0,0 +1,130 @@
+package bguspl.set.ex;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * The dealer's deck: the cards in a primitive array, the top of the deck being its last card. Drawing and returning a
+ * card only move the cursor (O(1), no boxing), and shuffling is an in-place Fisher-Yates shuffle driven by a seedable
+ * random generator, so the order of the cards dealt can be reproduced.
+ *
+ * @inv 0 <= size <= cards.length
+ */
+public class Deck {
+
+    /**
+     * The cards in the deck are cards[0..size), cards[size - 1] is drawn next.
+     */
+    private final int[] cards;
+    private int size;
+
+    private final SplittableRandom random;
+
+    /**
+     * A read-only view of the cards in the deck (see asList).
+     */
+    private final List<Integer> view = new AbstractList<Integer>() {
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("index: " + index + " size: " + size);
+            return cards[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    /**
+     * Creates a full (unshuffled) deck.
+     *
+     * @param deckSize - the number of cards (the cards are 0 to deckSize - 1).
+     * @param random   - the random generator used for shuffling.
+     */
+    public Deck(int deckSize, SplittableRandom random) {
+        cards = new int[deckSize];
+        for (int card = 0; card < deckSize; ++card)
+            cards[card] = card;
+        size = deckSize;
+        this.random = random;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Draws the top card of the deck.
+     *
+     * @return - the card.
+     * @throws NoSuchElementException - if the deck is empty.
+     */
+    public int draw() {
+        if (size == 0)
+            throw new NoSuchElementException("the deck is empty");
+        return cards[--size];
+    }
+
+    /**
+     * Returns a card to the top of the deck.
+     *
+     * @param card - the card (which must have been drawn from this deck).
+     * @throws IllegalStateException - if the deck is full.
+     */
+    public void add(int card) {
+        if (size == cards.length)
+            throw new IllegalStateException("the deck is full");
+        cards[size++] = card;
+    }
+
+    /**
+     * Shuffles the cards in the deck (Fisher-Yates).
+     */
+    public void shuffle() {
+        for (int i = size - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+    }
+
+    /**
+     * Copies the cards in the deck (bottom first, see restore).
+     *
+     * @param cards - the array to copy the cards to (at least as long as the full deck).
+     * @return      - the number of cards in the deck.
+     */
+    public int copyTo(int[] cards) {
+        System.arraycopy(this.cards, 0, cards, 0, size);
+        return size;
+    }
+
+    /**
+     * Replaces the cards in the deck (e.g. when a game is resumed, see GameSnapshot).
+     *
+     * @param cards - the cards (bottom first, see copyTo).
+     * @param size  - the number of cards.
+     */
+    public void restore(int[] cards, int size) {
+        if (size > this.cards.length)
+            throw new IllegalArgumentException("the deck holds " + this.cards.length + " cards, not " + size);
+        System.arraycopy(cards, 0, this.cards, 0, size);
+        this.size = size;
+    }
+
+    /**
+     * @return - a read-only view of the cards in the deck (which follows the changes of the deck).
+     */
+    public List<Integer> asList() {
+        return view;
+    }
+}
@@ -0,0 +1,239 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A snapshot of the state of a game in a memory-mapped file, from which the game can be resumed after a restart of
+ * the process (see Dealer::checkpoint and Dealer::resume).
+ * The dealer fills in the fields of the snapshot and saves it: saving is a few hundred memory writes into the mapped
+ * file, with no system call, and the operating system writes the pages out in the background (the file is forced to
+ * the disk only when the snapshot is closed, so a snapshot survives a crash of the process, not of the machine).
+ *
+ * The file has a fixed layout, all little endian: a HEADER_SIZE bytes header followed by two regions of the same
+ * size, which are saved to alternately so that the previous snapshot stays intact while the next one is written.
+ * header - magic (int), version (short), zero (short), players, table size, deck size, set size (ints), zero padding.
+ * region - sequence number (long, 0 for none), CRC32 of the rest of the region (int), zero (int), then the state:
+ *          the time left until the reshuffle (long, milliseconds), the number of cards in the deck (int), the deck
+ *          (deck size ints, bottom first), the card in each slot (table size ints, -1 for none), the tokens of each
+ *          player (longs, bit (slot % 64) of word (player * slot words + slot / 64)), the score of each player (ints)
+ *          and the freeze time left of each player (longs, milliseconds, -1 if not frozen).
+ * A region is valid if its CRC matches, and the valid region with the higher sequence number holds the snapshot.
+ */
+public class GameSnapshot implements Closeable {
+
+    static final int MAGIC = 0x53544553; // "SETS"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * The size of the sequence number and the CRC at the start of each region.
+     */
+    private static final int REGION_HEADER_SIZE = 16;
+
+    /**
+     * The state of the game (filled in before save, and by load).
+     */
+    long reshuffleLeft;
+    int deckCount;
+    final int[] deck;
+    final int[] cards;
+    final long[] tokens;
+    final int[] scores;
+    final long[] freezeLeft;
+
+    private final int players;
+    private final int tableSize;
+    private final int deckSize;
+    private final int slotWords;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int regionSize;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * The sequence number of the last snapshot saved (or loaded).
+     */
+    private long sequence;
+
+    /**
+     * Opens (or creates) the snapshot file of a game. The snapshot in an existing file is discarded if the file was
+     * written for another configuration.
+     *
+     * @param path   - the snapshot file.
+     * @param config - the configuration of the game.
+     * @throws IOException - if the file cannot be opened or mapped.
+     */
+    public GameSnapshot(Path path, Config config) throws IOException {
+        players = config.players;
+        tableSize = config.tableSize;
+        deckSize = config.deckSize;
+        slotWords = (tableSize + 63) >>> 6;
+        deck = new int[deckSize];
+        cards = new int[tableSize];
+        tokens = new long[players * slotWords];
+        scores = new int[players];
+        freezeLeft = new long[players];
+        regionSize = REGION_HEADER_SIZE + 8 + 4 + 4 * deckSize + 4 * tableSize + 8 * tokens.length + 4 * players + 8 * players;
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean matches = channel.size() == HEADER_SIZE + 2L * regionSize;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + 2L * regionSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            matches = matches && buffer.getInt(0) == MAGIC && buffer.getShort(4) == VERSION
+                    && buffer.getInt(8) == players && buffer.getInt(12) == tableSize
+                    && buffer.getInt(16) == deckSize && buffer.getInt(20) == config.setSize;
+            if (!matches) {
+                for (int i = 0; i < HEADER_SIZE + 2 * regionSize; i += 4)
+                    buffer.putInt(i, 0);
+                buffer.putInt(0, MAGIC).putShort(4, VERSION).putInt(8, players).putInt(12, tableSize)
+                        .putInt(16, deckSize).putInt(20, config.setSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Saves the state in the fields of the snapshot, in place of the older of the two snapshots in the file.
+     */
+    void save() {
+        int region = HEADER_SIZE + (int) ((sequence + 1) & 1) * regionSize;
+        int position = region + REGION_HEADER_SIZE;
+        buffer.putLong(position, reshuffleLeft);
+        buffer.putInt(position + 8, deckCount);
+        position += 12;
+        for (int card : deck) {
+            buffer.putInt(position, card);
+            position += 4;
+        }
+        for (int card : cards) {
+            buffer.putInt(position, card);
+            position += 4;
+        }
+        for (long word : tokens) {
+            buffer.putLong(position, word);
+            position += 8;
+        }
+        for (int score : scores) {
+            buffer.putInt(position, score);
+            position += 4;
+        }
+        for (long left : freezeLeft) {
+            buffer.putLong(position, left);
+            position += 8;
+        }
+        // a region cut short (e.g. by a crash while saving) fails its CRC, so the previous snapshot is loaded instead
+        buffer.putInt(region + 8, checksum(region));
+        buffer.putLong(region, ++sequence);
+    }
+
+    /**
+     * Loads the last snapshot saved in the file into the fields of the snapshot.
+     *
+     * @return - true iff the file holds a valid snapshot.
+     */
+    boolean load() {
+        int region = -1;
+        long latest = 0;
+        for (int i = 0; i < 2; i++) {
+            int start = HEADER_SIZE + i * regionSize;
+            long sequence = buffer.getLong(start);
+            if (sequence > latest && buffer.getInt(start + 8) == checksum(start)) {
+                region = start;
+                latest = sequence;
+            }
+        }
+        if (region == -1)
+            return false;
+
+        int position = region + REGION_HEADER_SIZE;
+        reshuffleLeft = buffer.getLong(position);
+        deckCount = buffer.getInt(position + 8);
+        position += 12;
+        for (int i = 0; i < deck.length; i++, position += 4)
+            deck[i] = buffer.getInt(position);
+        for (int i = 0; i < cards.length; i++, position += 4)
+            cards[i] = buffer.getInt(position);
+        for (int i = 0; i < tokens.length; i++, position += 8)
+            tokens[i] = buffer.getLong(position);
+        for (int i = 0; i < scores.length; i++, position += 4)
+            scores[i] = buffer.getInt(position);
+        for (int i = 0; i < freezeLeft.length; i++, position += 8)
+            freezeLeft[i] = buffer.getLong(position);
+        sequence = latest;
+        return isConsistent();
+    }
+
+    /**
+     * @return - true iff every card is at most once in the deck or on the table, and every token is on a card.
+     */
+    private boolean isConsistent() {
+        if (deckCount < 0 || deckCount > deckSize)
+            return false;
+        boolean[] seen = new boolean[deckSize];
+        for (int i = 0; i < deckCount; i++) {
+            if (deck[i] < 0 || deck[i] >= deckSize || seen[deck[i]])
+                return false;
+            seen[deck[i]] = true;
+        }
+        for (int card : cards) {
+            if (card < -1 || card >= deckSize || card != -1 && seen[card])
+                return false;
+            if (card != -1)
+                seen[card] = true;
+        }
+        for (int player = 0; player < players; player++)
+            for (int slot = 0; slot < tableSize; slot++)
+                if ((tokens[player * slotWords + (slot >>> 6)] & (1L << slot)) != 0 && cards[slot] == -1)
+                    return false;
+        return true;
+    }
+
+    /**
+     * Discards the snapshot in the file (e.g. when the game is over, so that the next game starts afresh).
+     */
+    void clear() {
+        buffer.putLong(HEADER_SIZE, 0);
+        buffer.putLong(HEADER_SIZE + regionSize, 0);
+    }
+
+    private int checksum(int region) {
+        ByteBuffer state = buffer.duplicate();
+        state.limit(region + regionSize).position(region + REGION_HEADER_SIZE);
+        crc.reset();
+        crc.update(state);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return - the number of words in the token bitmask of a single player (see tokens).
+     */
+    int slotWords() {
+        return slotWords;
+    }
+
+    /**
+     * Writes the snapshot out to the disk and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            buffer.force();
+        } finally {
+            channel.close();
+        }
+    }
+}
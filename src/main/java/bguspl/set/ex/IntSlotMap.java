@@ -0,0 +1,84 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A slot map in primitive arrays (-1 meaning none), which also maintains the number of cards and a bitmask of the
+ * empty slots, so counting the cards is O(1) and finding the empty slots is O(number of empty slots). The count and the
+ * bitmask words are shared by several slots, so they are updated atomically.
+ */
+class IntSlotMap implements SlotMap {
+
+    private final int[] slotToCard;
+    private final int[] cardToSlot;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Bit (slot % 64) of word (slot / 64) is set iff the slot is empty.
+     */
+    private final AtomicLongArray emptySlots;
+
+    private static final LongBinaryOperator SET_BITS = (word, bits) -> word | bits;
+    private static final LongBinaryOperator CLEAR_BITS = (word, bits) -> word & ~bits;
+
+    IntSlotMap(int tableSize, int deckSize) {
+        slotToCard = new int[tableSize];
+        cardToSlot = new int[deckSize];
+        Arrays.fill(slotToCard, -1);
+        Arrays.fill(cardToSlot, -1);
+        emptySlots = new AtomicLongArray((tableSize + 63) >>> 6);
+        for (int slot = 0; slot < tableSize; slot++)
+            emptySlots.getAndAccumulate(slot >>> 6, 1L << slot, SET_BITS);
+    }
+
+    @Override
+    public int cardAt(int slot) {
+        return slotToCard[slot];
+    }
+
+    @Override
+    public int slotOf(int card) {
+        return cardToSlot[card];
+    }
+
+    @Override
+    public void put(int card, int slot) {
+        if (slotToCard[slot] != -1) remove(slot);
+        slotToCard[slot] = card;
+        cardToSlot[card] = slot;
+        emptySlots.getAndAccumulate(slot >>> 6, 1L << slot, CLEAR_BITS);
+        count.incrementAndGet();
+    }
+
+    @Override
+    public int remove(int slot) {
+        int card = slotToCard[slot];
+        if (card == -1) return -1;
+        cardToSlot[card] = -1;
+        slotToCard[slot] = -1;
+        emptySlots.getAndAccumulate(slot >>> 6, 1L << slot, SET_BITS);
+        count.decrementAndGet();
+        return card;
+    }
+
+    @Override
+    public int count() {
+        return count.get();
+    }
+
+    @Override
+    public int nextEmpty(int from) {
+        if (from >= slotToCard.length) return -1;
+        int word = from >>> 6;
+        long bits = emptySlots.get(word) & (-1L << from);
+        while (bits == 0) {
+            if (++word == emptySlots.length()) return -1;
+            bits = emptySlots.get(word);
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
@@ -0,0 +1,117 @@
+package bguspl.set.ex;
+
+import bguspl.set.Util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the sets left in the game: the sets all of whose cards are live (in the deck or on the table, i.e.
+ * not yet taken by a player). For each card it counts the live sets the card is in, and it updates the counts when a
+ * card is taken: any two cards determine the card that completes them to a set (see Util::completeSet), so only the
+ * completions of the taken card with each live card need to be looked up (O(deckSize)). Whether any set is left is
+ * then an O(1) check.
+ *
+ * The tracker only works for sets of 3 cards and with a utility that can complete sets; otherwise it is disabled (see
+ * isEnabled) and the sets left must be found by other means.
+ */
+class LiveSets {
+
+    private final Util util;
+
+    private boolean enabled;
+
+    private final boolean[] live;
+
+    /**
+     * The number of live sets each card is in, and the number of live sets.
+     */
+    private final int[] cardSets;
+    private volatile int sets;
+
+    private final int[] pair = new int[2];
+
+    LiveSets(Util util, int deckSize, int setSize) {
+        this.util = util;
+        live = new boolean[deckSize];
+        Arrays.fill(live, true);
+        cardSets = new int[deckSize];
+        enabled = util != null && setSize == 3;
+        try {
+            if (enabled) countInitialSets();
+        } catch (UnsupportedOperationException ex) {
+            enabled = false;
+            Arrays.fill(cardSets, 0);
+            sets = 0;
+        }
+    }
+
+    private void countInitialSets() {
+        int count = 0;
+        for (int a = 0; a < live.length; a++)
+            for (int b = a + 1; b < live.length; b++) {
+                int c = completion(a, b);
+                // each set is counted once, from its two lowest cards
+                if (c > b) {
+                    cardSets[a]++;
+                    cardSets[b]++;
+                    cardSets[c]++;
+                    count++;
+                }
+            }
+        sets = count;
+    }
+
+    private int completion(int a, int b) {
+        pair[0] = a;
+        pair[1] = b;
+        return util.completeSet(pair);
+    }
+
+    /**
+     * @return - true iff the tracker keeps track of the live sets.
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes a card out of the game, along with the sets it is in.
+     */
+    synchronized void take(int card) {
+        if (card < 0 || !live[card]) return;
+        live[card] = false;
+        if (!enabled) return;
+        for (int other = 0; other < live.length; other++) {
+            if (!live[other]) continue;
+            int last = completion(card, other);
+            // each set is seen twice (once from each of its other cards)
+            if (last > other && live[last]) {
+                cardSets[card]--;
+                cardSets[other]--;
+                cardSets[last]--;
+                sets--;
+            }
+        }
+    }
+
+    /**
+     * @return - true iff the card is live.
+     */
+    synchronized boolean isLive(int card) {
+        return live[card];
+    }
+
+    /**
+     * @return - the number of live sets (only meaningful if the tracker is enabled).
+     */
+    int countSets() {
+        return sets;
+    }
+
+    /**
+     * @return - the number of live sets the card is in (only meaningful if the tracker is enabled).
+     */
+    synchronized int countSets(int card) {
+        return cardSets[card];
+    }
+}
@@ -1,9 +1,15 @@
 package bguspl.set.ex;
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.GameThreads;
+import bguspl.set.LatencyMetrics;
 
 /**
  * This class manages the players' threads and data
@@ -36,7 +42,7 @@ public class Player implements Runnable {
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
      */
-    private Thread aiThread;
+    private volatile Thread aiThread;
 
     /**
      * True iff the player is human (not a computer player).
@@ -55,12 +61,27 @@ public class Player implements Runnable {
 
     private ArrayBlockingQueue<Integer> keyPressed;
 
+    /**
+     * The stamp of the earliest queued key press of each slot (0 if none, see bguspl.set.LatencyMetrics). The stamps
+     * ride alongside the queue so that it keeps queueing plain slots; a slot pressed again while queued keeps the
+     * stamp of its first press.
+     */
+    private final AtomicLongArray pressedAt;
+
     private Dealer dealer;
 
     private boolean canPlay;
 
     private boolean isFreeze;
 
+    /**
+     * The lock of the player's state, and the condition signalled when the player may be able to play again. A lock
+     * rather than the player's monitor, so that a player waiting on a virtual thread does not pin its carrier thread
+     * (see Config::virtualThreads).
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition playable = lock.newCondition();
+
     /**
      * The class constructor.
      *
@@ -77,6 +98,7 @@ public class Player implements Runnable {
         this.human = human;
         this.dealer = dealer;
         keyPressed = new ArrayBlockingQueue<Integer>(3);
+        pressedAt = new AtomicLongArray(env.config.tableSize);
         canPlay = false;
     }
 
@@ -91,27 +113,30 @@ public class Player implements Runnable {
 
         while (!terminate) {
             waitUntilCanPlay();
-            PlaceRemoveToken();
+            // waiting clears the queue, which may drop the key pressed by terminate
+            if(!terminate)
+                PlaceRemoveToken();
         }
         if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
     /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly asks the
+     * player's strategy for keys and presses them. The thread waits while the player cannot play, while the strategy
+     * has nothing to do, and while the queue of key presses is full.
      */
     private void createArtificialIntelligence() {
-        // note: this is a very very smart AI (!)
-        aiThread = new Thread(() -> {
+        ComputerStrategy strategy = ComputerStrategy.create(env, table, id);
+        aiThread = GameThreads.newThread(env, () -> {
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
-            while (!terminate) {
-                // TODO implement player key press simulator
-                keyPressed((int)(Math.random() * env.config.tableSize));
-//                try {
-//                    synchronized (this) { wait(); }
-//                } catch (InterruptedException ignored) {}
-            }
+            try {
+                while (!terminate) {
+                    awaitPlayable();
+                    for (int slot : strategy.nextKeys())
+                        if (!terminate) keyPressed(slot);
+                }
+            } catch (InterruptedException ignored) {}
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
         }, "computer-" + id);
         aiThread.start();
@@ -120,55 +145,132 @@ public class Player implements Runnable {
     /**
      * Called when the game should be terminated due to an external event.
      */
-    public synchronized void terminate() {
-        // TODO implement
-        terminate = true;
-        canPlay = true;
-        isFreeze = false;
-        notifyAll();
-        if(keyPressed.size() != 3)
-            keyPressed(0);
+    public void terminate() {
+        lock.lock();
+        try {
+            terminate = true;
+            canPlay = true;
+            isFreeze = false;
+            playable.signalAll();
+            if(aiThread != null)
+                aiThread.interrupt();
+            if(keyPressed.size() != 3)
+                keyPressed(0);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private void PlaceRemoveToken(){
         try{
-            Integer slot = keyPressed.take();
-            synchronized (this){
-                if(canPlay && !isFreeze){
-                    if(table.checkToken(id,slot)) {
-                        table.removeToken(id, slot);
-                    }
-                    else{
-                        int tokenCount = table.tokenCount(id);
-                        if(tokenCount < 3) {
-                            table.placeToken(id, slot);
-                            if(tokenCount == 2){
-                                dealer.enterPlayerWithSet(id);
-                                synchronized (dealer){
-                                    dealer.notifyAll();
-                                    blockPlay();
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
+            int slot = keyPressed.take();
+            long stamp = unstamp(slot);
+            long takenAt = env.metrics.now();
+            env.metrics.record(LatencyMetrics.Stage.KEY_QUEUE, stamp, takenAt);
+            press(slot, stamp);
+            env.metrics.record(LatencyMetrics.Stage.TOKEN, takenAt, env.metrics.now());
         }
         catch(InterruptedException ex){};
     }
 
+    /**
+     * Toggles the player's token on a slot (if the player can play), and claims a set with the player's tokens once
+     * there are enough of them.
+     *
+     * @param slot      - the slot corresponding to the key pressed.
+     * @param pressedAt - the stamp of the key press.
+     */
+    private void press(int slot, long pressedAt){
+        lock.lock();
+        try {
+            if(toggle(slot))
+                claim(pressedAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Toggles the player's token on a slot if the player can play. Called on the player's thread (or by a replay,
+     * see Replay).
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     * @return     - true iff the player now has a token on as many slots as there are cards in a set.
+     */
+    boolean toggle(int slot){
+        lock.lock();
+        try {
+            // the table locks the slot, so the dealer may be replacing cards in other slots meanwhile
+            return canPlay && !isFreeze && table.toggleToken(id, slot) && table.tokenCount(id) == env.config.setSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claims a set with the player's tokens, and stops the player until the dealer handles the claim. Called on the
+     * player's thread (or by a replay, see Replay).
+     */
+    void claim(){
+        claim(0);
+    }
+
+    private void claim(long pressedAt){
+        lock.lock();
+        try {
+            dealer.enterPlayerWithSet(id, pressedAt);
+            dealer.wakeUp();
+            blockPlay();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * This method is called when a key is pressed.
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
-        // TODO implement
+        boolean stamped = stamp(slot);
         try{
             keyPressed.put(slot);
         }
-        catch(InterruptedException ex){};
+        catch(InterruptedException ex){
+            if(stamped) unstamp(slot);
+        };
+    }
+
+    /**
+     * This method is called when a key is pressed by a caller that must not wait for the player (see
+     * bguspl.set.NetworkInputManager).
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     * @return     - true iff the key press was queued, false if it was dropped since the queue is full.
+     */
+    public boolean offerKeyPressed(int slot) {
+        boolean stamped = stamp(slot);
+        boolean offered = keyPressed.offer(slot);
+        if(!offered && stamped)
+            unstamp(slot);
+        return offered;
+    }
+
+    /**
+     * Stamps a key press of a slot, unless a press of the slot is stamped already.
+     *
+     * @return - true iff the press was stamped.
+     */
+    private boolean stamp(int slot){
+        long now = env.metrics.now();
+        return now != 0 && slot >= 0 && slot < pressedAt.length() && pressedAt.compareAndSet(slot, 0, now);
+    }
+
+    /**
+     * @return - the stamp of the key press of a slot taken off the queue (0 if none), clearing it.
+     */
+    private long unstamp(int slot){
+        return slot >= 0 && slot < pressedAt.length() ? pressedAt.getAndSet(slot, 0) : 0;
     }
 
     /**
@@ -178,55 +280,103 @@ public class Player implements Runnable {
      * @post - the player's score is updated in the ui.
      */
     public void point() {
-        // TODO implement
-        //freeze time
-        //print freeze
+        // the freeze that follows a point is set by the dealer (see Dealer::freezePlayer)
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.ui.setScore(id, ++score);
+        env.journal.record(GameJournal.Event.SCORE, id, -1, -1, score);
     }
 
     /**
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
-        // TODO implement
-        //penalty time
-        //print penalty
+        // the penalty is the freeze set by the dealer (see Dealer::freezePlayer)
     }
 
     public int getScore() {
         return score;
     }
 
-    public synchronized void blockPlay(){
-        canPlay = false;
+    /**
+     * Restores the score and the freeze of the player when a game is resumed (see Dealer::resume).
+     */
+    void restore(int score, boolean frozen) {
+        this.score = score;
+        env.ui.setScore(id, score);
+        env.journal.record(GameJournal.Event.SCORE, id, -1, -1, score);
+        if(frozen)
+            freezePlay();
     }
 
-    public synchronized void freezePlay(){
-        isFreeze = true;
+    public void blockPlay(){
+        lock.lock();
+        try {
+            canPlay = false;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void resumePlay(){
-        canPlay = true;
-        this.notifyAll();
+    public void freezePlay(){
+        lock.lock();
+        try {
+            isFreeze = true;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void unfreezePlay(){
-        isFreeze = false;
-        this.notifyAll();
+    public void resumePlay(){
+        lock.lock();
+        try {
+            canPlay = true;
+            playable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void unfreezePlay(){
+        lock.lock();
+        try {
+            isFreeze = false;
+            playable.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public boolean isFreeze(){
         return isFreeze;
     }
 
-    private synchronized void waitUntilCanPlay(){
-        while(!canPlay || isFreeze){
-            try{
-                this.wait();
-                keyPressed.clear();
+    /**
+     * Waits (without consuming key presses) until the player can play or the game terminates.
+     */
+    private void awaitPlayable() throws InterruptedException {
+        lock.lock();
+        try {
+            while(!terminate && (!canPlay || isFreeze))
+                playable.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void waitUntilCanPlay(){
+        lock.lock();
+        try {
+            while(!canPlay || isFreeze){
+                try{
+                    playable.await();
+                    keyPressed.clear();
+                    for(int slot = 0; slot < pressedAt.length(); slot++)
+                        pressedAt.set(slot, 0);
+                }
+                catch (InterruptedException ignored){}
             }
-            catch (InterruptedException ignored){}
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -0,0 +1,22 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Presses random keys (the original computer player).
+ */
+public class RandomStrategy implements ComputerStrategy {
+
+    private final Env env;
+
+    public RandomStrategy(Env env) {
+        this.env = env;
+    }
+
+    @Override
+    public int[] nextKeys() {
+        return new int[]{ThreadLocalRandom.current().nextInt(env.config.tableSize)};
+    }
+}
@@ -0,0 +1,325 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.GameJournalReader;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.Util;
+import bguspl.set.VirtualClock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Replays a recorded game (see FileGameJournal) deterministically and verifies it against the recording.
+ * The dealer, the table and the players of the replay are driven on a single thread and on a virtual clock: the
+ * recorded key presses of the players (their token placements and removals) are pressed again at their recorded
+ * times, and the dealer wakes up when it is due (or when the recording shows it acted) instead of sleeping. The deck
+ * is shuffled with the recorded seed, so everything else the game does follows from the presses.
+ * A player that completes a set with a press makes its claim when the recording shows it did (numbered as recorded),
+ * and the dealer takes the recorded batch of claims when the recording shows it did, since the batches of claims decide
+ * which of the claims for the same cards wins. The rest of what the dealer does when it wakes up is replayed at once,
+ * when the recording shows the dealer's next action, so a recording that depends on a finer interleaving (e.g. a press
+ * that got in between the dealer removing a set and dealing its replacement) is reported as a divergence.
+ *
+ * Every event of the replay is checked against the recording. The events of the dealer and those of each player are
+ * compared in the order of their own stream, since the interleaving of the streams in the recording depends on the
+ * scheduling of the recorded threads. The replay stops at the first divergence.
+ */
+public class Replay {
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+    private final Path path;
+
+    /**
+     * The recorded events (in the order they were recorded).
+     */
+    private int count;
+    private long[] millis;
+    private GameJournal.Event[] events;
+    private int[] players;
+    private int[] slots;
+    private int[] cards;
+    private int[] values;
+
+    /**
+     * The indices of the recorded events of each stream: the dealer's (stream 0) and each player's (stream id + 1).
+     */
+    private int[][] streams;
+
+    /**
+     * The number of events of each stream replayed so far, whether each recorded event was replayed, and the first
+     * recorded event that was not replayed yet.
+     */
+    private int[] replayed;
+    private boolean[] matched;
+    private int matchedCount;
+    private int nextUnmatched;
+
+    /**
+     * The first divergence of the replay from the recording (null if none so far).
+     */
+    private String divergence;
+
+    private VirtualClock clock;
+
+    /**
+     * @param logger - the logger of the replayed game.
+     * @param config - the configuration of the game (which must match the recording).
+     * @param util   - the utilities of the game.
+     * @param path   - the journal of the recorded game.
+     */
+    public Replay(Logger logger, Config config, Util util, Path path) {
+        this.logger = logger;
+        this.config = config;
+        this.util = util;
+        this.path = path;
+    }
+
+    /**
+     * @return - the number of events recorded (once the recording was read, see run).
+     */
+    public int getEventCount() {
+        return count;
+    }
+
+    /**
+     * Replays the game and verifies it against the recording.
+     *
+     * @return - the first divergence of the replay from the recording, or null if the replay matches the recording.
+     * @throws IOException - if the recording cannot be read or does not match the configuration.
+     */
+    public String run() throws IOException {
+        long shuffleSeed = read();
+        clock = new VirtualClock(count > 0 ? millis[0] : 0);
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util, clock, new Verifier());
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, shuffleSeed);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        dealer.resumePlay();
+        // the round goes on as long as it did when the dealer last checked (after dealing or waking up)
+        boolean inRound = false, roundGoesOn = false;
+        boolean[] pendingClaims = new boolean[players.length];
+        while (divergence == null && nextUnmatched < count) {
+            int next = nextUnmatched;
+            long time = millis[next];
+            if (isPress(events[next])) {
+                // a frozen player waits for the dealer to unfreeze it
+                if (players[this.players[next]].isFreeze() && inRound && roundGoesOn && wakeTime(dealer) <= time) {
+                    clock.advanceTo(wakeTime(dealer));
+                    dealer.tick();
+                    roundGoesOn = dealer.roundGoesOn();
+                    continue;
+                }
+                clock.advanceTo(time);
+                int before = matchedCount;
+                if (players[this.players[next]].toggle(slots[next]))
+                    pendingClaims[this.players[next]] = true;
+                if (divergence == null && matchedCount == before)
+                    divergence = "event " + next + " (player " + this.players[next] + "): recorded " + describe(next)
+                            + ", but the replayed player could not press slot " + slots[next];
+            } else if (events[next] == GameJournal.Event.CLAIM) {
+                clock.advanceTo(time);
+                if (pendingClaims[this.players[next]]) {
+                    pendingClaims[this.players[next]] = false;
+                    dealer.setClaimSequence(slots[next]);
+                    players[this.players[next]].claim();
+                } else
+                    divergence = "event " + next + " (player " + this.players[next] + "): recorded " + describe(next)
+                            + ", but the replayed player has no set of tokens to claim";
+            } else if (events[next] == GameJournal.Event.CLAIMS_TAKEN) {
+                clock.advanceTo(time);
+                dealer.takeClaims(recordedBatch());
+            } else if (!inRound) {
+                if (dealer.shouldFinish())
+                    break;
+                dealer.startRound();
+                inRound = true;
+                roundGoesOn = dealer.roundGoesOn();
+            } else if (!roundGoesOn) {
+                dealer.endRound();
+                inRound = false;
+            } else {
+                // the dealer wakes up when it is due, but no later than the recording shows it acted
+                long now = clock.currentTimeMillis();
+                long wake = wakeTime(dealer);
+                clock.advanceTo(now < time ? Math.min(wake, time) : wake);
+                dealer.tick();
+                roundGoesOn = dealer.roundGoesOn();
+            }
+        }
+        if (divergence == null && nextUnmatched < count)
+            divergence = "event " + nextUnmatched + " (" + streamName(streamOf(events[nextUnmatched], this.players[nextUnmatched]))
+                    + "): recorded " + describe(nextUnmatched) + ", but the replayed game was over";
+        if (divergence == null)
+            verifyState(table, players);
+        return divergence;
+    }
+
+    /**
+     * @return - the sequence numbers of the claims of the recorded batch the dealer takes next (see
+     *           GameJournal.Event.CLAIMS_TAKEN).
+     */
+    private long[] recordedBatch() {
+        int first = replayed[0];
+        int size = Math.min(values[streams[0][first]], streams[0].length - first);
+        long[] sequences = new long[Math.max(size, 0)];
+        for (int i = 0; i < sequences.length; i++) {
+            int index = streams[0][first + i];
+            sequences[i] = events[index] == GameJournal.Event.CLAIMS_TAKEN ? slots[index] : -1;
+        }
+        return sequences;
+    }
+
+    /**
+     * @return - the time the dealer wakes up next: right away if a claim awaits it, or when its next event is due.
+     */
+    private long wakeTime(Dealer dealer) {
+        long now = clock.currentTimeMillis();
+        return dealer.hasClaims() ? now : dealer.nextWakeTime(now);
+    }
+
+    /**
+     * Reads the recording and splits it into streams.
+     *
+     * @return - the recorded shuffle seed.
+     */
+    private long read() throws IOException {
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            if (reader.players() != config.players || reader.tableSize() != config.tableSize
+                    || reader.deckSize() != config.deckSize || reader.setSize() != config.setSize)
+                throw new IOException(path + " was recorded with " + reader.players() + " players, " + reader.tableSize()
+                        + " slots, " + reader.deckSize() + " cards and sets of " + reader.setSize() + ", which does not match the configuration");
+            long total = reader.count();
+            if (total > Integer.MAX_VALUE)
+                throw new IOException(path + " is too long to replay (" + total + " events)");
+            count = (int) total;
+            millis = new long[count];
+            events = new GameJournal.Event[count];
+            players = new int[count];
+            slots = new int[count];
+            cards = new int[count];
+            values = new int[count];
+            int[] streamSizes = new int[config.players + 1];
+            int i = 0;
+            while (i < count && reader.next()) {
+                millis[i] = reader.millis();
+                events[i] = reader.event();
+                players[i] = reader.player();
+                slots[i] = reader.slot();
+                cards[i] = reader.card();
+                values[i] = reader.value();
+                int stream = streamOf(events[i], players[i]);
+                if (stream < 0 || stream > config.players)
+                    throw new IOException(path + ": event " + i + " (" + describe(i) + ") has no such player");
+                ++streamSizes[stream];
+                ++i;
+            }
+            count = i;
+
+            streams = new int[streamSizes.length][];
+            for (int stream = 0; stream < streams.length; stream++)
+                streams[stream] = new int[streamSizes[stream]];
+            int[] filled = new int[streams.length];
+            for (i = 0; i < count; i++) {
+                int stream = streamOf(events[i], players[i]);
+                streams[stream][filled[stream]++] = i;
+            }
+            replayed = new int[streams.length];
+            matched = new boolean[count];
+            return reader.shuffleSeed();
+        }
+    }
+
+    /**
+     * @return - true iff the event is caused by a key press of a player (rather than by the game).
+     */
+    private static boolean isPress(GameJournal.Event event) {
+        return event == GameJournal.Event.TOKEN_PLACED || event == GameJournal.Event.TOKEN_REMOVED;
+    }
+
+    /**
+     * @return - the stream of an event: the player's stream for its presses and claims, the dealer's for the rest.
+     */
+    private static int streamOf(GameJournal.Event event, int player) {
+        if (isPress(event) || event == GameJournal.Event.CLAIM)
+            return player >= 0 ? player + 1 : -1;
+        return 0;
+    }
+
+    private static String streamName(int stream) {
+        return stream == 0 ? "dealer" : "player " + (stream - 1);
+    }
+
+    private String describe(int index) {
+        return describe(events[index], players[index], slots[index], cards[index], values[index]) + " at " + millis[index] + " ms";
+    }
+
+    private static String describe(GameJournal.Event event, int player, int slot, int card, int value) {
+        return event + " (player " + player + ", slot " + slot + ", card " + card + ", value " + value + ")";
+    }
+
+    /**
+     * Verifies that the cards on the table and the scores of the players at the end of the replay are the ones the
+     * recording ends with.
+     */
+    private void verifyState(Table table, Player[] players) {
+        int[] recordedCards = new int[config.tableSize];
+        Arrays.fill(recordedCards, -1);
+        int[] recordedScores = new int[config.players];
+        for (int i = 0; i < count; i++) {
+            if (events[i] == GameJournal.Event.CARD_PLACED) recordedCards[slots[i]] = cards[i];
+            else if (events[i] == GameJournal.Event.CARD_REMOVED) recordedCards[slots[i]] = -1;
+            else if (events[i] == GameJournal.Event.SCORE) recordedScores[this.players[i]] = values[i];
+        }
+        int[] cards = new int[config.tableSize];
+        table.snapshot(cards);
+        if (!Arrays.equals(cards, recordedCards))
+            divergence = "the recorded game ends with the cards " + Arrays.toString(recordedCards)
+                    + " on the table, the replayed game with " + Arrays.toString(cards);
+        for (Player player : players)
+            if (divergence == null && player.getScore() != recordedScores[player.id])
+                divergence = "the recorded game ends with player " + player.id + " scoring " + recordedScores[player.id]
+                        + ", the replayed game with " + player.getScore();
+    }
+
+    /**
+     * The journal of the replayed game, which checks every event against the recording.
+     */
+    private final class Verifier implements GameJournal {
+
+        @Override
+        public void record(Event event, int player, int slot, int card, int value) {
+            if (divergence != null)
+                return;
+            int stream = streamOf(event, player);
+            if (stream < 0 || stream >= streams.length || replayed[stream] == streams[stream].length) {
+                divergence = "the replayed game went on with " + describe(event, player, slot, card, value) + " at "
+                        + clock.currentTimeMillis() + " ms after the end of the recorded " + streamName(Math.max(0, stream));
+                return;
+            }
+            int index = streams[stream][replayed[stream]];
+            if (events[index] != event || players[index] != player || slots[index] != slot || cards[index] != card
+                    || values[index] != value) {
+                divergence = "event " + index + " (" + streamName(stream) + "): recorded " + describe(index)
+                        + ", replayed " + describe(event, player, slot, card, value) + " at " + clock.currentTimeMillis() + " ms";
+                return;
+            }
+            // the replay catches up with the recorded time of the event (e.g. of the deal that starts the countdown)
+            clock.advanceTo(millis[index]);
+            ++replayed[stream];
+            matched[index] = true;
+            ++matchedCount;
+            while (nextUnmatched < count && matched[nextUnmatched])
+                ++nextUnmatched;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Runs a dealer as a series of steps on a scheduler shared by many games (see GameHost), instead of on a thread of its
+ * own. The dealer only takes a thread of the scheduler while it starts or ends the game, deals, ticks or ends a round;
+ * its sleeps between ticks are delays of the scheduler, cut short when a player claims a set (see Dealer::wakeUp).
+ * The steps of a dealer never run concurrently. The game must be played on the system clock, since the delays of the
+ * scheduler are real time. The game is ended on an executor of its own (see Dealer::finish), since that waits for
+ * the player threads to stop, which must not hold up a thread of the scheduler.
+ *
+ * The game is terminated once it goes over its budget: the wall-clock time since it started, or the CPU time the
+ * dealer's steps took (if the JVM measures thread CPU time).
+ */
+public class ScheduledDealer {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Env env;
+    private final Dealer dealer;
+    private final ScheduledExecutorService scheduler;
+    private final Executor finisher;
+
+    /**
+     * The budget of the game (0 for none).
+     */
+    private final long budgetMillis;
+    private final long budgetCpuNanos;
+
+    /**
+     * Completed when the game is over.
+     */
+    private final CompletableFuture<ScheduledDealer> done = new CompletableFuture<>();
+
+    /**
+     * The lock of the scheduling state: the next step scheduled (null while a step runs), whether a step runs and
+     * whether the dealer was woken up while it did.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private ScheduledFuture<?> next;
+    private boolean running;
+    private boolean wakeRequested;
+
+    /**
+     * The state of the game loop (see Dealer::run), only accessed by the steps.
+     */
+    private boolean started;
+    private boolean inRound;
+    private boolean resumed;
+    private boolean finished;
+    private long startTime;
+
+    /**
+     * The CPU time the dealer's steps took (in nanoseconds), and whether the game went over its budget.
+     */
+    private volatile long cpuNanos;
+    private volatile boolean overBudget;
+
+    /**
+     * @param env            - the game environment objects (on the system clock).
+     * @param dealer         - the dealer of the game.
+     * @param scheduler      - the scheduler to run the dealer on.
+     * @param finisher       - the executor to end the game on (see Dealer::finish).
+     * @param budgetMillis   - the wall-clock time the game may take (0 for no limit).
+     * @param budgetCpuNanos - the CPU time the dealer may take (0 for no limit).
+     */
+    public ScheduledDealer(Env env, Dealer dealer, ScheduledExecutorService scheduler, Executor finisher,
+                           long budgetMillis, long budgetCpuNanos) {
+        this.env = env;
+        this.dealer = dealer;
+        this.scheduler = scheduler;
+        this.finisher = finisher;
+        this.budgetMillis = budgetMillis;
+        this.budgetCpuNanos = budgetCpuNanos;
+    }
+
+    /**
+     * Starts the game.
+     *
+     * @return - a future completed when the game is over (exceptionally if the dealer failed).
+     * @throws RejectedExecutionException - if the scheduler was shut down.
+     */
+    public CompletableFuture<ScheduledDealer> start() {
+        dealer.setWaker(this::wake);
+        lock.lock();
+        try {
+            next = scheduler.schedule(this::step, 0, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+        return done;
+    }
+
+    /**
+     * Terminates the game (it ends on its next step).
+     */
+    public void terminate() {
+        dealer.terminate();
+    }
+
+    /**
+     * Schedules the next step right away (unless one is about to run anyway).
+     */
+    private void wake() {
+        lock.lock();
+        try {
+            if (running)
+                wakeRequested = true;
+            // a step that cannot be cancelled started already, and takes the claims into account
+            else if (next != null && next.cancel(false))
+                next = schedule(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ScheduledFuture<?> schedule(long delayMillis) {
+        try {
+            return scheduler.schedule(this::step, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the host is shutting down
+            dealer.terminate();
+            return null;
+        }
+    }
+
+    private void step() {
+        lock.lock();
+        try {
+            if (running || finished)
+                return;
+            running = true;
+            next = null;
+        } finally {
+            lock.unlock();
+        }
+
+        long delay = 0;
+        long cpuStart = cpuTime();
+        Throwable failure = null;
+        try {
+            delay = advance();
+        } catch (RuntimeException | Error e) {
+            finished = true;
+            failure = e;
+            env.logger.log(Level.SEVERE, "the dealer failed: " + e);
+            dealer.terminate();
+        }
+        cpuNanos += cpuTime() - cpuStart;
+        if (!finished && !overBudget && budgetExceeded()) {
+            overBudget = true;
+            env.logger.log(Level.SEVERE, "the game went over its budget, terminating it.");
+            dealer.terminate();
+            delay = 0;
+        }
+
+        lock.lock();
+        try {
+            running = false;
+            if (!finished) {
+                next = schedule(wakeRequested ? 0 : delay);
+                wakeRequested = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (finished)
+            end(failure);
+    }
+
+    /**
+     * Ends the game on the finisher: stops the players of a game that started (if the dealer can still stop them) and
+     * completes the future of the game.
+     *
+     * @param failure - the failure of the dealer (null if the game is over).
+     */
+    private void end(Throwable failure) {
+        Runnable end = () -> {
+            Throwable failed = failure;
+            if (started) try {
+                dealer.finish();
+            } catch (RuntimeException | Error e) {
+                if (failed == null) {
+                    env.logger.log(Level.SEVERE, "the dealer failed: " + e);
+                    failed = e;
+                }
+            }
+            if (failed == null)
+                done.complete(this);
+            else
+                done.completeExceptionally(failed);
+        };
+        try {
+            finisher.execute(end);
+        } catch (RejectedExecutionException e) {
+            // the host is shutting down
+            end.run();
+        }
+    }
+
+    /**
+     * Advances the game loop of the dealer by a step (see Dealer::run).
+     *
+     * @return - the delay until the next step (in milliseconds).
+     */
+    private long advance() {
+        if (!started) {
+            started = true;
+            startTime = env.clock.currentTimeMillis();
+            resumed = dealer.begin();
+        }
+        if (!inRound) {
+            if (dealer.shouldFinish()) {
+                finished = true;
+                return 0;
+            }
+            if (resumed)
+                resumed = false;
+            else
+                dealer.startRound();
+            inRound = true;
+        } else {
+            dealer.wokeUp();
+            dealer.tick();
+        }
+        dealer.checkpoint();
+        if (!dealer.roundGoesOn()) {
+            dealer.endRound();
+            inRound = false;
+            return 0;
+        }
+        long now = env.clock.currentTimeMillis();
+        return dealer.hasClaims() ? 0 : Math.max(0, dealer.nextWakeTime(now) - now);
+    }
+
+    private boolean budgetExceeded() {
+        return budgetMillis > 0 && env.clock.currentTimeMillis() - startTime > budgetMillis
+                || budgetCpuNanos > 0 && cpuNanos > budgetCpuNanos;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * @return - the CPU time the dealer's steps took so far (in nanoseconds, 0 if not measured).
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * @return - true iff the game went over its budget (and was terminated).
+     */
+    public boolean isOverBudget() {
+        return overBudget;
+    }
+}
@@ -0,0 +1,172 @@
+package bguspl.set.ex;
+
+import bguspl.set.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of the sets among the cards on the table, updated on each card placement and removal (see Table).
+ * Any two cards determine the single card that completes them to a set (see Util::completeSet), so placing a card
+ * only needs to look up the completion of the new card with each other card on the table, and removing a card only
+ * unlinks the sets it was in: both are O(tableSize). The sets are kept as a table of slot triples, third[a][b] being
+ * the slot that completes the slots a and b to a set (-1 if none).
+ *
+ * The index only works for sets of 3 cards and with a utility that can complete sets; otherwise it is disabled (see
+ * isEnabled) and the table finds the sets on demand instead.
+ */
+class SetIndex {
+
+    private final Util util;
+
+    private boolean enabled;
+
+    /**
+     * The card in each slot and the slot of each card (-1 if none), as far as the index knows.
+     */
+    private final int[] slotToCard;
+    private final int[] cardToSlot;
+
+    private final int[][] third;
+
+    /**
+     * The number of sets each slot participates in, and the number of sets on the table.
+     */
+    private final int[] slotSets;
+    private volatile int sets;
+
+    /**
+     * The sets on the table as ascending slot triples (null when it needs to be rebuilt, see getSets).
+     */
+    private List<int[]> setList;
+
+    private final int[] pair = new int[2];
+
+    SetIndex(Util util, int tableSize, int deckSize, int setSize) {
+        this.util = util;
+        enabled = util != null && setSize == 3;
+        slotToCard = new int[tableSize];
+        cardToSlot = new int[deckSize];
+        Arrays.fill(slotToCard, -1);
+        Arrays.fill(cardToSlot, -1);
+        third = new int[tableSize][tableSize];
+        for (int[] row : third)
+            Arrays.fill(row, -1);
+        slotSets = new int[tableSize];
+    }
+
+    /**
+     * @return - true iff the index keeps track of the sets on the table.
+     */
+    synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds the sets the card placed in the slot completes.
+     */
+    synchronized void place(int card, int slot) {
+        slotToCard[slot] = card;
+        cardToSlot[card] = slot;
+        if (!enabled) return;
+
+        pair[0] = card;
+        for (int other = 0; other < slotToCard.length; other++) {
+            if (other == slot || slotToCard[other] == -1) continue;
+            pair[1] = slotToCard[other];
+            int completion;
+            try {
+                completion = util.completeSet(pair);
+            } catch (UnsupportedOperationException ex) {
+                disable();
+                return;
+            }
+            int last = completion == -1 ? -1 : cardToSlot[completion];
+            // each new set is seen twice (once from each of its other slots), and a completion must be a third card
+            if (last > other && last != slot) link(slot, other, last);
+        }
+    }
+
+    /**
+     * Removes the sets the card in the slot participated in.
+     */
+    synchronized void remove(int slot) {
+        int card = slotToCard[slot];
+        if (card == -1) return;
+        if (enabled) {
+            int[] row = third[slot];
+            for (int other = 0; other < row.length; other++)
+                if (row[other] > other) unlink(slot, other, row[other]);
+        }
+        slotToCard[slot] = -1;
+        cardToSlot[card] = -1;
+    }
+
+    private void link(int a, int b, int c) {
+        third[a][b] = third[b][a] = c;
+        third[a][c] = third[c][a] = b;
+        third[b][c] = third[c][b] = a;
+        slotSets[a]++;
+        slotSets[b]++;
+        slotSets[c]++;
+        sets++;
+        setList = null;
+    }
+
+    private void unlink(int a, int b, int c) {
+        third[a][b] = third[b][a] = -1;
+        third[a][c] = third[c][a] = -1;
+        third[b][c] = third[c][b] = -1;
+        slotSets[a]--;
+        slotSets[b]--;
+        slotSets[c]--;
+        sets--;
+        setList = null;
+    }
+
+    private void disable() {
+        enabled = false;
+        for (int[] row : third)
+            Arrays.fill(row, -1);
+        Arrays.fill(slotSets, 0);
+        sets = 0;
+        setList = null;
+    }
+
+    /**
+     * @return - true iff there is a set on the table (only meaningful if the index is enabled).
+     */
+    boolean hasSet() {
+        return sets > 0;
+    }
+
+    /**
+     * @return - the number of sets on the table (only meaningful if the index is enabled).
+     */
+    int countSets() {
+        return sets;
+    }
+
+    /**
+     * @return - true iff the card in the slot is part of a set on the table (only meaningful if the index is enabled).
+     */
+    synchronized boolean isInSet(int slot) {
+        return slotSets[slot] > 0;
+    }
+
+    /**
+     * @return - the sets on the table as ascending slot triples (an unmodifiable list, shared until the sets change).
+     */
+    synchronized List<int[]> getSets() {
+        if (setList == null) {
+            List<int[]> list = new ArrayList<>(sets);
+            for (int a = 0; a < third.length; a++)
+                for (int b = a + 1; b < third.length; b++)
+                    if (third[a][b] > b) list.add(new int[]{a, b, third[a][b]});
+            setList = Collections.unmodifiableList(list);
+        }
+        return setList;
+    }
+}
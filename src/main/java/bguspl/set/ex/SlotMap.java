@@ -0,0 +1,42 @@
+package bguspl.set.ex;
+
+/**
+ * The mapping between the slots of the table and the cards placed in them (see Table).
+ * A slot (card) is only changed while its lock is held, but different slots may change concurrently.
+ *
+ * @inv cardAt(x) == y iff slotOf(y) == x
+ */
+interface SlotMap {
+
+    /**
+     * @return - the card in the slot, or -1 if the slot is empty.
+     */
+    int cardAt(int slot);
+
+    /**
+     * @return - the slot the card is in, or -1 if the card is not on the table.
+     */
+    int slotOf(int card);
+
+    /**
+     * Places a card in an empty slot.
+     */
+    void put(int card, int slot);
+
+    /**
+     * Empties a slot.
+     *
+     * @return - the card that was in the slot, or -1 if the slot was empty.
+     */
+    int remove(int slot);
+
+    /**
+     * @return - the number of cards on the table.
+     */
+    int count();
+
+    /**
+     * @return - the first empty slot from the given slot on, or -1 if there is none.
+     */
+    int nextEmpty(int from);
+}
@@ -0,0 +1,99 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Looks for a set on the table and claims it, after a reaction delay (see Config::computerReactionMillis).
+ * With probability 1 - Config::computerAccuracy one of the claimed cards is replaced by another card on the table,
+ * so the claim is (most likely) wrong. While there is no set on the table the strategy waits for the cards to change.
+ */
+public class SolverStrategy implements ComputerStrategy {
+
+    private final Env env;
+    private final Table table;
+    private final int player;
+
+    /**
+     * The last snapshot of the table (the card in each slot), its version, and the slots of a set in it (null if none).
+     * The set is only picked again when the cards on the table change.
+     */
+    private final int[] cards;
+    private long version = -1;
+    private int[] set;
+
+    public SolverStrategy(Env env, Table table, int player) {
+        this.env = env;
+        this.table = table;
+        this.player = player;
+        cards = new int[env.config.tableSize];
+    }
+
+    @Override
+    public int[] nextKeys() throws InterruptedException {
+        while (true) {
+            long current = table.version();
+            if (current != version) findSet();
+            if (set == null) {
+                table.awaitChange(version);
+                continue;
+            }
+
+            env.clock.sleep(env.config.computerReactionMillis);
+            if (table.version() != version) continue; // the set may be gone, look again
+            return keysFor(claimedSlots());
+        }
+    }
+
+    /**
+     * Takes a snapshot of the table and picks a set in it (see Table::getSets).
+     */
+    private void findSet() {
+        List<int[]> sets;
+        do {
+            version = table.snapshot(cards);
+            sets = table.getSets();
+        } while (version != table.version());
+        set = sets.isEmpty() ? null : sets.get(ThreadLocalRandom.current().nextInt(sets.size())).clone();
+    }
+
+    /**
+     * @return - the slots to claim: the set found, or a mistake (see class description).
+     */
+    private int[] claimedSlots() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < env.config.computerAccuracy) return set;
+
+        int[] slots = set.clone();
+        int slot = random.nextInt(cards.length);
+        for (int i = 0; i < cards.length && (cards[slot] == -1 || contains(slots, slot)); i++)
+            slot = (slot + 1) % cards.length;
+        if (cards[slot] != -1 && !contains(slots, slot)) slots[random.nextInt(slots.length)] = slot;
+        return slots;
+    }
+
+    /**
+     * @return - the keys that take the player's tokens from where they are to the given slots (toggling the tokens
+     * elsewhere off first).
+     */
+    private int[] keysFor(int[] slots) {
+        int[] tokens = table.getTokenSlots(player);
+        int[] keys = new int[tokens.length + slots.length];
+        int count = 0;
+        for (int slot : tokens)
+            if (!contains(slots, slot)) keys[count++] = slot;
+        for (int slot : slots)
+            if (!contains(tokens, slot)) keys[count++] = slot;
+        int[] result = new int[count];
+        System.arraycopy(keys, 0, result, 0, count);
+        return result;
+    }
+
+    private static boolean contains(int[] slots, int slot) {
+        for (int s : slots)
+            if (s == slot) return true;
+        return false;
+    }
+}
@@ -1,17 +1,25 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameJournal;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongBinaryOperator;
 import java.util.stream.Collectors;
 
 /**
  * This class contains the data that is visible to the player.
+ * Every slot has its own lock, held while its card or the tokens on it change, so the players can place tokens on
+ * some slots while the dealer replaces the cards in others. The tokens are kept as bitmasks (of slots per player and
+ * of players per slot), whose words are updated atomically since a word is shared by several slots (or players).
  *
- * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv slots.cardAt(x) == y iff slots.slotOf(y) == x
  */
 public class Table {
 
@@ -21,19 +29,57 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Mapping between the slots and the cards placed in them (see SlotMap).
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    private final SlotMap slots;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * The number of slots.
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    private final int tableSize;
 
     /**
-    * Mapping between playerId to his 0-3 token (represented by their slotId on which they are)
-    */
-    private List<Integer>[] playerTokens;
+     * The slots on which each player has a token: bit (slot % 64) of word (player * slotWords + slot / 64).
+     */
+    private final AtomicLongArray playerSlots;
+
+    /**
+     * The players that have a token on each slot: bit (player % 64) of word (slot * playerWords + player / 64).
+     */
+    private final AtomicLongArray slotPlayers;
+
+    /**
+     * The number of words in the bitmask of a single player (of a single slot) in playerSlots (in slotPlayers).
+     */
+    private final int slotWords;
+    private final int playerWords;
+
+    /**
+     * The number of card placements and removals so far (the version of the cards on the table), and the condition
+     * signalled on each of them (see awaitChange).
+     */
+    private volatile long version;
+
+    /**
+     * The number of card placements and removals in progress: a snapshot is only taken while there are none, so it
+     * never sees part of a batch (see snapshot). It drops back under changedLock, and snapshots wait for it on changed.
+     */
+    private final AtomicInteger changing = new AtomicInteger();
+    private final ReentrantLock changedLock = new ReentrantLock();
+    private final Condition changed = changedLock.newCondition();
+
+    private static final LongBinaryOperator SET_BITS = (word, bits) -> word | bits;
+    private static final LongBinaryOperator CLEAR_BITS = (word, bits) -> word & ~bits;
+
+    /**
+     * The lock of each slot (see lockSlots for locking several slots).
+     */
+    private final ReentrantLock[] slotLocks;
+
+    /**
+     * The index of the sets on the table (see SetIndex).
+     */
+    private final SetIndex index;
 
     /**
      * Constructor for testing.
@@ -43,14 +89,7 @@ public class Table {
      * @param cardToSlot - mapping between a card and the slot it is in (null if none).
      */
     public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
-
-        this.env = env;
-        this.slotToCard = slotToCard;
-        this.cardToSlot = cardToSlot;
-        playerTokens = new ArrayList[env.config.players];
-        for(int i=0; i<playerTokens.length;i++){
-            playerTokens[i] = new ArrayList<>(3);
-        }
+        this(env, new BoxedSlotMap(slotToCard, cardToSlot), slotToCard.length, cardToSlot.length);
     }
 
     /**
@@ -59,34 +98,88 @@ public class Table {
      * @param env - the game environment objects.
      */
     public Table(Env env) {
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, new IntSlotMap(env.config.tableSize, env.config.deckSize), env.config.tableSize, env.config.deckSize);
+    }
 
+    private Table(Env env, SlotMap slots, int tableSize, int deckSize) {
+
+        this.env = env;
+        this.slots = slots;
+        this.tableSize = tableSize;
+        slotWords = (tableSize + 63) >>> 6;
+        playerWords = (env.config.players + 63) >>> 6;
+        playerSlots = new AtomicLongArray(env.config.players * slotWords);
+        slotPlayers = new AtomicLongArray(tableSize * playerWords);
+        slotLocks = new ReentrantLock[tableSize];
+        for(int i=0; i<slotLocks.length;i++){
+            slotLocks[i] = new ReentrantLock();
+        }
+        index = new SetIndex(env.util, tableSize, deckSize, env.config.setSize);
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        getSets().forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
+            List<Integer> slots = Arrays.stream(set).boxed().collect(Collectors.toList());
+            int[][] features = env.util.cardsToFeatures(getCards(set.clone()));
             System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
         });
     }
 
+    /**
+     * @return - true iff there is a legal set among the cards on the table.
+     */
+    public boolean hasSet() {
+        if (index.isEnabled()) return index.hasSet();
+        return !findSets(1).isEmpty();
+    }
+
+    /**
+     * @return - the legal sets among the cards on the table, as ascending slot arrays (do not modify).
+     */
+    public List<int[]> getSets() {
+        if (index.isEnabled()) return index.getSets();
+        return findSets(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return     - true iff the card in the slot is part of a legal set on the table.
+     */
+    public boolean isInSet(int slot) {
+        if (index.isEnabled()) return index.isInSet(slot);
+        return getSets().stream().anyMatch(set -> Arrays.stream(set).anyMatch(s -> s == slot));
+    }
+
+    /**
+     * Finds the sets on the table from scratch (when the set index is disabled).
+     */
+    private List<int[]> findSets(int count) {
+        int[] cards = new int[tableSize];
+        snapshot(cards);
+        List<Integer> deck = Arrays.stream(cards).filter(card -> card != -1).boxed().collect(Collectors.toList());
+        List<int[]> sets = new ArrayList<>();
+        for (int[] set : env.util.findSets(deck, count)) {
+            int[] slots = new int[set.length];
+            for (int i = 0; i < set.length; i++)
+                for (int slot = 0; slot < cards.length; slot++)
+                    if (cards[slot] == set[i]) slots[i] = slot;
+            Arrays.sort(slots);
+            sets.add(slots);
+        }
+        return sets;
+    }
+
     /**
      * Count the number of cards currently on the table.
      *
      * @return - the number of cards on the table.
      */
     public int countCards() {
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
-        return cards;
+        return slots.count();
     }
 
     /**
@@ -98,14 +191,23 @@ public class Table {
      */
     public void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
-
-        // TODO implement
-        env.ui.placeCard(card, slot);
+        slotLocks[slot].lock();
+        try {
+            cardsChanging();
+            try {
+                slots.put(card, slot);
+                index.place(card, slot);
+            } finally {
+                cardsChanged();
+            }
+            env.journal.record(GameJournal.Event.CARD_PLACED, -1, slot, card, 0);
+            env.ui.placeCard(card, slot);
+        } finally {
+            slotLocks[slot].unlock();
+        }
     }
 
     /**
@@ -114,48 +216,238 @@ public class Table {
      */
     public int removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        // TODO implement
-        Integer card = slotToCard[slot];
-        cardToSlot[card] = null;
-        slotToCard[slot] = null;
-        env.ui.removeCard(slot);
-        return card;
+        slotLocks[slot].lock();
+        try {
+            int card;
+            cardsChanging();
+            try {
+                card = slots.remove(slot);
+                index.remove(slot);
+            } finally {
+                cardsChanged();
+            }
+            if (card != -1)
+                env.journal.record(GameJournal.Event.CARD_REMOVED, -1, slot, card, 0);
+            env.ui.removeCard(slot);
+            return card;
+        } finally {
+            slotLocks[slot].unlock();
+        }
     }
 
-    public Integer[] removeAllCardsAndReturn(){
-        Integer[] cards = new Integer[countCards()];
-        int i = 0;
-        for(Integer card:slotToCard){
-            if(card != null){
-                cards[i++] = removeCard(cardToSlot[card]);
+    /**
+     * Places several cards on the table at once: a single delay for the whole batch (see Config::tableBatchDelayMillis)
+     * and a single update of the display.
+     * @param cards - the card ids to place.
+     * @param slots - the slots in which the cards should be placed (respectively).
+     *
+     * @post - the cards placed are on the table, in the assigned slots.
+     */
+    public void placeCards(int[] cards, int[] slots) {
+        if (slots.length == 0)
+            return;
+        try {
+            env.clock.sleep(env.config.tableBatchDelayMillis);
+        } catch (InterruptedException ignored) {}
+
+        int[] locked = slots.clone();
+        lockSlots(locked);
+        try {
+            // the whole batch is a single change, so a snapshot holds either none of its cards or all of them
+            cardsChanging();
+            try {
+                for (int i = 0; i < slots.length; i++) {
+                    this.slots.put(cards[i], slots[i]);
+                    index.place(cards[i], slots[i]);
+                }
+            } finally {
+                cardsChanged();
+            }
+            for (int i = 0; i < slots.length; i++)
+                env.journal.record(GameJournal.Event.CARD_PLACED, -1, slots[i], cards[i], 0);
+            env.ui.placeCards(cards, slots);
+        } finally {
+            unlockSlots(locked);
+        }
+    }
+
+    /**
+     * Removes the cards from several slots at once: a single delay for the whole batch (see
+     * Config::tableBatchDelayMillis) and a single update of the display.
+     * @param slots - the slots from which to remove the cards.
+     * @return      - the cards removed (respectively, -1 for an empty slot).
+     */
+    public int[] removeCards(int[] slots) {
+        int[] cards = new int[slots.length];
+        if (slots.length == 0)
+            return cards;
+        try {
+            env.clock.sleep(env.config.tableBatchDelayMillis);
+        } catch (InterruptedException ignored) {}
+
+        int[] locked = slots.clone();
+        lockSlots(locked);
+        try {
+            cardsChanging();
+            try {
+                for (int i = 0; i < slots.length; i++) {
+                    cards[i] = this.slots.remove(slots[i]);
+                    index.remove(slots[i]);
+                }
+            } finally {
+                cardsChanged();
             }
+            for (int i = 0; i < slots.length; i++)
+                if (cards[i] != -1)
+                    env.journal.record(GameJournal.Event.CARD_REMOVED, -1, slots[i], cards[i], 0);
+            env.ui.removeCards(slots);
+        } finally {
+            unlockSlots(locked);
         }
         return cards;
     }
 
-    public List<Integer> getEmptySlots(){
-        List<Integer> emptySlots = new ArrayList<>(env.config.tableSize - countCards());
-        for(int i=0; i<slotToCard.length;i++){
-            if(slotToCard[i] == null){
-                emptySlots.add(i);
+    /**
+     * Called right before the cards on the table change (with their slots locked), and followed by cardsChanged as
+     * soon as they did: the journal and the display are updated after the change ends, so snapshots never wait on them.
+     */
+    private void cardsChanging() {
+        changing.incrementAndGet();
+    }
+
+    private void cardsChanged() {
+        changedLock.lock();
+        try {
+            // the new version is visible before the change ends, so a snapshot taken after it sees the new version
+            ++version;
+            changing.decrementAndGet();
+            changed.signalAll();
+        } finally {
+            changedLock.unlock();
+        }
+    }
+
+    /**
+     * @return - the version of the cards on the table (changes whenever a card is placed or removed).
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Blocks until the cards on the table change.
+     * @param version - the version the caller knows about (see version).
+     * @throws InterruptedException - if the thread is interrupted while waiting.
+     */
+    public void awaitChange(long version) throws InterruptedException {
+        changedLock.lock();
+        try {
+            while (this.version == version)
+                changed.await();
+        } finally {
+            changedLock.unlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the cards on the table (the snapshot may be stale as soon as it is taken, see version).
+     * The snapshot is copied while no cards are changing (waiting for the changes in progress to end) and taken
+     * again if they started to change meanwhile, so it never holds part of a batch of changes (see placeCards and
+     * removeCards).
+     * @param cards - the array to fill with the card in each slot (-1 if the slot is empty).
+     * @return      - the version of the cards on the table when the snapshot was taken.
+     */
+    public long snapshot(int[] cards) {
+        long version;
+        do {
+            changedLock.lock();
+            try {
+                while (changing.get() != 0)
+                    changed.awaitUninterruptibly();
+                version = this.version;
+            } finally {
+                changedLock.unlock();
             }
+            for (int slot = 0; slot < cards.length; slot++)
+                cards[slot] = slots.cardAt(slot);
+        } while (changing.get() != 0 || version != this.version);
+        return version;
+    }
+
+    /**
+     * Locks several slots at once (e.g. to replace the cards of a set atomically), always in ascending slot order so
+     * that two threads locking overlapping slots cannot deadlock. Slot locks are reentrant.
+     * @param slots - the slots to lock (sorted in place).
+     */
+    public void lockSlots(int[] slots) {
+        Arrays.sort(slots);
+        for (int slot : slots)
+            slotLocks[slot].lock();
+    }
+
+    /**
+     * Unlocks slots locked with lockSlots.
+     * @param slots - the slots to unlock.
+     */
+    public void unlockSlots(int[] slots) {
+        for (int i = slots.length - 1; i >= 0; --i)
+            slotLocks[slots[i]].unlock();
+    }
+
+    public int[] removeAllCardsAndReturn(){
+        int[] occupied = new int[countCards()];
+        int i = 0;
+        for(int slot = 0; slot < tableSize && i < occupied.length; slot++){
+            if(slots.cardAt(slot) != -1){
+                occupied[i++] = slot;
+            }
+        }
+        return removeCards(i == occupied.length ? occupied : Arrays.copyOf(occupied, i));
+    }
+
+    public List<Integer> getEmptySlots(){
+        List<Integer> emptySlots = new ArrayList<>(tableSize - countCards());
+        for(int slot = nextEmptySlot(0); slot != -1; slot = nextEmptySlot(slot + 1)){
+            emptySlots.add(slot);
         }
         return emptySlots;
     }
 
+    /**
+     * @param from - the slot to start looking from.
+     * @return     - the first empty slot from the given slot on, or -1 if there is none.
+     */
+    public int nextEmptySlot(int from){
+        return slots.nextEmpty(from);
+    }
+
+    /**
+     * @return - the card in the slot, or -1 if the slot is empty.
+     */
+    public int cardAt(int slot){
+        return slots.cardAt(slot);
+    }
+
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
     public void placeToken(int player, int slot) {
-        // TODO implement
-        if(tokenCount(player) < 3 && slotToCard[slot]!=null){
-            playerTokens[player].add(slot);
-            env.ui.placeToken(player, slot);
+        slotLocks[slot].lock();
+        try {
+            // only the player itself places its tokens, so its count cannot grow meanwhile
+            if(tokenCount(player) < env.config.setSize && slots.cardAt(slot) != -1 && !checkToken(player, slot)){
+                playerSlots.getAndAccumulate(player * slotWords + (slot >>> 6), 1L << slot, SET_BITS);
+                slotPlayers.getAndAccumulate(slot * playerWords + (player >>> 6), 1L << player, SET_BITS);
+                env.journal.record(GameJournal.Event.TOKEN_PLACED, player, slot, slots.cardAt(slot), 0);
+                env.ui.placeToken(player, slot);
+            }
+        } finally {
+            slotLocks[slot].unlock();
         }
     }
 
@@ -165,48 +457,125 @@ public class Table {
      * @param slot   - the slot from which to remove the token.
      * @return       - true iff a token was successfully removed.
      */
-    public boolean removeToken(int player, Integer slot) {
-        // TODO implement
-        boolean removed = playerTokens[player].remove(slot);
-        if(removed){
+    public boolean removeToken(int player, int slot) {
+        slotLocks[slot].lock();
+        try {
+            long previous = playerSlots.getAndAccumulate(player * slotWords + (slot >>> 6), 1L << slot, CLEAR_BITS);
+            if((previous & (1L << slot)) == 0)
+                return false;
+            slotPlayers.getAndAccumulate(slot * playerWords + (player >>> 6), 1L << player, CLEAR_BITS);
+            env.journal.record(GameJournal.Event.TOKEN_REMOVED, player, slot, slots.cardAt(slot), 0);
             env.ui.removeToken(player, slot);
             return true;
+        } finally {
+            slotLocks[slot].unlock();
+        }
+    }
+
+    /**
+     * Removes the token of a player from a grid slot if there is one, or places one otherwise.
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot on which the token is toggled.
+     * @return       - true iff a token was placed.
+     */
+    public boolean toggleToken(int player, int slot) {
+        slotLocks[slot].lock();
+        try {
+            if(removeToken(player, slot))
+                return false;
+            placeToken(player, slot);
+            return checkToken(player, slot);
+        } finally {
+            slotLocks[slot].unlock();
         }
-        return false;
     }
 
-    public void removeTokensFromSlot(Integer slot){
-        for(List<Integer> list: playerTokens){
-            list.remove(slot);
+    public void removeTokensFromSlot(int slot){
+        slotLocks[slot].lock();
+        try {
+            for(int word = 0; word < playerWords; word++){
+                long players = slotPlayers.getAndSet(slot * playerWords + word, 0);
+                for(; players != 0; players &= players - 1){
+                    int player = (word << 6) + Long.numberOfTrailingZeros(players);
+                    playerSlots.getAndAccumulate(player * slotWords + (slot >>> 6), 1L << slot, CLEAR_BITS);
+                    env.journal.record(GameJournal.Event.TOKEN_CLEARED, player, slot, slots.cardAt(slot), 0);
+                }
+            }
+            env.ui.removeTokens(slot);
+        } finally {
+            slotLocks[slot].unlock();
         }
-        env.ui.removeTokens(slot);
     }
 
     public void clearAllTokens(){
-        for(List list: playerTokens){
-            list.clear();
-        }
+        for(int i = 0; i < playerSlots.length(); i++)
+            for(long bits = playerSlots.getAndSet(i, 0); bits != 0; bits &= bits - 1){
+                int slot = ((i % slotWords) << 6) + Long.numberOfTrailingZeros(bits);
+                env.journal.record(GameJournal.Event.TOKEN_CLEARED, i / slotWords, slot, slots.cardAt(slot), 0);
+            }
+        for(int i = 0; i < slotPlayers.length(); i++)
+            slotPlayers.set(i, 0);
         env.ui.removeTokens();
     }
 
+    /**
+     * Copies the tokens of all the players, without locking (each player's tokens as they were at some point).
+     * @param words - the array to copy to: bit (slot % 64) of word (player * slot words + slot / 64) is set iff the
+     *                player has a token on the slot.
+     */
+    public void copyTokens(long[] words){
+        for(int i = 0; i < playerSlots.length(); i++)
+            words[i] = playerSlots.get(i);
+    }
+
     public boolean checkToken(int player, int slot){
-        return playerTokens[player].contains(slot);
+        return (playerSlots.get(player * slotWords + (slot >>> 6)) & (1L << slot)) != 0;
     }
 
     public int tokenCount(int player){
-        return playerTokens[player].size();
+        int count = 0;
+        for(int word = 0; word < slotWords; word++)
+            count += Long.bitCount(playerSlots.get(player * slotWords + word));
+        return count;
+    }
+
+    /**
+     * @return - the slots on which the player has tokens (in ascending order).
+     */
+    public int[] getTokenSlots(int player){
+        int[] slots = new int[tokenCount(player)];
+        int i = 0;
+        for(int word = 0; word < slotWords; word++)
+            for(long bits = playerSlots.get(player * slotWords + word); bits != 0 && i < slots.length; bits &= bits - 1)
+                slots[i++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+        return i == slots.length ? slots : Arrays.copyOf(slots, i);
+    }
+
+    /**
+     * Takes a consistent snapshot of the cards in several slots.
+     * @param slots - the slots (sorted in place, see lockSlots).
+     * @return      - the card in each slot (-1 if the slot is empty).
+     */
+    public int[] getCards(int[] slots){
+        int[] cards = new int[slots.length];
+        lockSlots(slots);
+        try {
+            for(int i = 0; i < slots.length; i++)
+                cards[i] = this.slots.cardAt(slots[i]);
+        } finally {
+            unlockSlots(slots);
+        }
+        return cards;
     }
 
     public List<Integer> getSetAsSlots(int playerId){
-        return new ArrayList<>(playerTokens[playerId]);
+        return Arrays.stream(getTokenSlots(playerId)).boxed().collect(Collectors.toList());
     }
 
     public int[] getSetAsCards(int playerId){
-        for(Integer i: playerTokens[playerId])
-            if(i == null){
-                System.out.println("there is a null");
-                System.out.println(playerTokens[playerId]);
-            }
-        return playerTokens[playerId].stream().filter(Objects::nonNull).mapToInt(slot -> slotToCard[slot]).toArray();
+        int[] cards = getTokenSlots(playerId);
+        for(int i = 0; i < cards.length; i++)
+            cards[i] = slots.cardAt(cards[i]);
+        return cards;
     }
 }
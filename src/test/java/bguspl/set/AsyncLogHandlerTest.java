@@ -0,0 +1,98 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogHandlerTest {
+
+    private static AsyncLogHandler handler(java.io.OutputStream out, int capacity, AsyncLogHandler.OverflowPolicy policy) {
+        AsyncLogHandler handler = new AsyncLogHandler(out, capacity, policy);
+        handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                return record.getMessage() + "\n";
+            }
+        });
+        return handler;
+    }
+
+    private static String[] lines(ByteArrayOutputStream out) {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    }
+
+    @Test
+    void block_WritesAllRecords() throws InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogHandler handler = handler(out, 16, AsyncLogHandler.OverflowPolicy.BLOCK);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++)
+                    handler.publish(new LogRecord(Level.INFO, id + ":" + i));
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        handler.flush();
+
+        String[] lines = lines(out);
+        assertEquals(20000, lines.length);
+        // the records of each thread are written in the order they were published
+        int[] next = new int[threads.length];
+        for (String line : lines) {
+            String[] parts = line.split(":");
+            assertEquals(next[Integer.parseInt(parts[0])]++, Integer.parseInt(parts[1]));
+        }
+        handler.close();
+    }
+
+    @Test
+    void count_ReportsDroppedRecords() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // the writer blocks on its first write, so the buffer fills up
+        AsyncLogHandler handler = handler(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                out.write(b, off, len);
+            }
+        }, 4, AsyncLogHandler.OverflowPolicy.COUNT);
+
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        writing.await();
+        for (int i = 0; i < 100; i++)
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        release.countDown();
+        handler.flush();
+        handler.publish(new LogRecord(Level.INFO, "last"));
+        handler.close();
+
+        String[] lines = lines(out);
+        // the drops are reported by the next batch, ahead of the records that fit in the buffer
+        assertEquals("first", lines[0]);
+        assertTrue(lines[1].startsWith("96 log records dropped"), lines[1]);
+        for (int i = 0; i < 4; i++)
+            assertEquals("record " + i, lines[i + 2]);
+        assertEquals("last", lines[6]);
+    }
+}
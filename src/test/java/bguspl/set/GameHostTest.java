@@ -0,0 +1,88 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameHostTest {
+
+    private final Logger logger = new Logger("", null) {};
+
+    /**
+     * Short games of two quick computer players.
+     */
+    private static Properties properties() {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", Level.OFF.getName());
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "2");
+        properties.setProperty("ComputerStrategy", "solver");
+        properties.setProperty("ComputerReactionSeconds", "0.01");
+        properties.setProperty("FeatureCount", "3");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("PointFreezeSeconds", "0.01");
+        properties.setProperty("PenaltyFreezeSeconds", "0.01");
+        properties.setProperty("HostThreads", "2");
+        return properties;
+    }
+
+    @Test
+    void submit_PlaysGamesToTheEnd() throws Exception {
+        Properties properties = properties();
+        properties.setProperty("HostMaxGames", "4");
+        try (GameHost host = new GameHost(logger, properties)) {
+            List<CompletableFuture<GameHost.GameResult>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++)
+                results.add(host.submit("game-" + i, new Properties()));
+            for (CompletableFuture<GameHost.GameResult> result : results) {
+                GameHost.GameResult game = result.get(60, TimeUnit.SECONDS);
+                assertFalse(game.overBudget);
+                assertEquals(2, game.scores.length);
+                assertTrue(Arrays.stream(game.scores).sum() > 0);
+            }
+            assertEquals(0, host.getRunningGames());
+        }
+    }
+
+    @Test
+    void submit_RejectsGamesOverCapacity() throws Exception {
+        Properties properties = properties();
+        properties.setProperty("HostMaxGames", "2");
+        properties.setProperty("HostMaxPlayers", "3");
+        // slow players, so the games do not end before the test does
+        properties.setProperty("ComputerReactionSeconds", "10");
+        try (GameHost host = new GameHost(logger, properties)) {
+            host.submit("game-0", new Properties());
+            // the host may run another game, but not two more players
+            assertThrows(RejectedExecutionException.class, () -> host.submit("game-1", new Properties()));
+            Properties onePlayer = new Properties();
+            onePlayer.setProperty("ComputerPlayers", "1");
+            host.submit("game-2", onePlayer);
+            // and no third game
+            assertThrows(RejectedExecutionException.class, () -> host.submit("game-3", new Properties()));
+            assertEquals(2, host.getRunningGames());
+        }
+    }
+
+    @Test
+    void submit_TerminatesGamesOverBudget() throws Exception {
+        Properties properties = properties();
+        properties.setProperty("ComputerReactionSeconds", "10");
+        properties.setProperty("GameBudgetSeconds", "0.2");
+        try (GameHost host = new GameHost(logger, properties)) {
+            GameHost.GameResult game = host.submit("game-0", new Properties()).get(30, TimeUnit.SECONDS);
+            assertTrue(game.overBudget);
+            assertTrue(game.millis < 10000);
+        }
+    }
+}
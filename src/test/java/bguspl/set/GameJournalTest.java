@@ -0,0 +1,153 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final Logger logger = new Logger("", null) {};
+    private final Config config = new Config(logger, new Properties());
+
+    @Test
+    void recordsAreReadBackInOrder() throws IOException {
+        Path path = directory.resolve("game.journal");
+        VirtualClock clock = new VirtualClock();
+        GameJournal.Event[] events = GameJournal.Event.values();
+        // a small buffer, so the records are written in many chunks (and read in others)
+        int count = 10000;
+        try (FileGameJournal journal = new FileGameJournal(path, logger, config, clock, 42L, 40 * FileGameJournal.RECORD_SIZE)) {
+            for (int i = 0; i < count; i++) {
+                journal.record(events[i % events.length], i % 4, i % 12, i % 81, -i);
+                clock.sleep(1);
+            }
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            assertEquals(42L, reader.shuffleSeed());
+            assertEquals(config.players, reader.players());
+            assertEquals(config.tableSize, reader.tableSize());
+            assertEquals(config.deckSize, reader.deckSize());
+            assertEquals(config.setSize, reader.setSize());
+            assertEquals(count, reader.count());
+
+            long previous = -1;
+            for (int i = 0; i < count; i++) {
+                assertTrue(reader.next());
+                assertTrue(reader.nanos() >= previous);
+                previous = reader.nanos();
+                assertEquals(i, reader.millis());
+                assertEquals(events[i % events.length], reader.event());
+                assertEquals(i % 4, reader.player());
+                assertEquals(i % 12, reader.slot());
+                assertEquals(i % 81, reader.card());
+                assertEquals(-i, reader.value());
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void record_FromManyThreads() throws IOException, InterruptedException {
+        Path path = directory.resolve("game.journal");
+        int threads = 8, count = 5000;
+        // buffers much smaller than the records, so the recording threads hand many of them to the writer
+        try (FileGameJournal journal = new FileGameJournal(path, logger, config, new VirtualClock(), 0L, 16 * FileGameJournal.RECORD_SIZE)) {
+            Thread[] recorders = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int player = t;
+                recorders[t] = new Thread(() -> {
+                    for (int i = 0; i < count; i++)
+                        journal.record(GameJournal.Event.TOKEN_PLACED, player, i % 12, i, i);
+                });
+                recorders[t].start();
+            }
+            for (Thread recorder : recorders)
+                recorder.join();
+        }
+
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            assertEquals((long) threads * count, reader.count());
+            int[] next = new int[threads];
+            long[] previous = {-1};
+            reader.forEach((nanos, millis, event, player, slot, card, value) -> {
+                // the records of all threads are ordered by time, and those of each thread by the order it recorded them
+                assertTrue(nanos >= previous[0]);
+                previous[0] = nanos;
+                assertEquals(next[player]++, value);
+            });
+            for (int t = 0; t < threads; t++)
+                assertEquals(count, next[t]);
+        }
+    }
+
+    @Test
+    void forEach_IgnoresPartialRecord() throws IOException {
+        Path path = directory.resolve("game.journal");
+        try (FileGameJournal journal = new FileGameJournal(path, logger, config, new VirtualClock(), 0L)) {
+            journal.record(GameJournal.Event.CLAIM, 1, -1, -1, 1);
+            journal.record(GameJournal.Event.VERDICT, 1, -1, -1, GameJournal.VERDICT_POINT);
+        }
+        // a journal cut in the middle of its last record (e.g. by a crash)
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - FileGameJournal.RECORD_SIZE / 2);
+        }
+
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            int[] claims = new int[1];
+            long visited = reader.forEach((nanos, millis, event, player, slot, card, value) -> {
+                assertEquals(GameJournal.Event.CLAIM, event);
+                claims[0] += player;
+            });
+            assertEquals(1, visited);
+            assertEquals(1, claims[0]);
+        }
+    }
+
+    @Test
+    void reader_RejectsUnknownEvents() throws IOException {
+        Path path = directory.resolve("game.journal");
+        try (FileGameJournal journal = new FileGameJournal(path, logger, config, new VirtualClock(), 0L)) {
+            journal.record(GameJournal.Event.CLAIM, 1, -1, -1, 1);
+            journal.record(GameJournal.Event.VERDICT, 1, -1, -1, GameJournal.VERDICT_POINT);
+        }
+        // the event of the second record
+        long offset = FileGameJournal.HEADER_SIZE + FileGameJournal.RECORD_SIZE;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(java.nio.ByteBuffer.wrap(new byte[]{(byte) GameJournal.Event.values().length}), offset + 16);
+        }
+
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            assertThrows(IllegalStateException.class, reader::event);
+            assertTrue(reader.next());
+            assertEquals(GameJournal.Event.CLAIM, reader.event());
+            IOException e = assertThrows(IOException.class, reader::next);
+            assertTrue(e.getMessage().contains("offset " + offset), e.getMessage());
+        }
+    }
+
+    @Test
+    void reader_RejectsOtherFiles() throws IOException {
+        Path path = directory.resolve("other.journal");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(java.nio.ByteBuffer.allocate(FileGameJournal.HEADER_SIZE));
+        }
+        assertThrows(IOException.class, () -> new GameJournalReader(path));
+    }
+}
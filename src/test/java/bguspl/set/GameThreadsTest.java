@@ -0,0 +1,42 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameThreadsTest {
+
+    private final Logger logger = new Logger("", null) {};
+
+    private Env env(boolean virtualThreads) {
+        Properties properties = new Properties();
+        properties.setProperty("VirtualThreads", Boolean.toString(virtualThreads));
+        return new Env(logger, new Config(logger, properties), null, null);
+    }
+
+    @Test
+    void newThread_PlatformByDefault() throws InterruptedException {
+        AtomicReference<String> ran = new AtomicReference<>();
+        Thread thread = GameThreads.newThread(env(false), () -> ran.set(Thread.currentThread().getName()), "player 0");
+        assertEquals(Thread.class, thread.getClass());
+        thread.start();
+        thread.join();
+        assertEquals("player 0", ran.get());
+    }
+
+    @Test
+    void newThread_VirtualIfSupported() throws Exception {
+        AtomicReference<String> ran = new AtomicReference<>();
+        Thread thread = GameThreads.newThread(env(true), () -> ran.set(Thread.currentThread().getName()), "player 1");
+        thread.start();
+        thread.join();
+        assertEquals("player 1", ran.get());
+        // on a runtime without virtual threads the players run on platform threads instead
+        boolean virtual = GameThreads.hasVirtualThreads() && (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        assertEquals(GameThreads.hasVirtualThreads(), virtual);
+    }
+}
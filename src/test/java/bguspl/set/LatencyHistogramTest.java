@@ -0,0 +1,64 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentiles_WithinOnePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10000; micros++)
+            histogram.record(micros * 1000);
+        assertEquals(10000, histogram.getTotalCount());
+        assertEquals(10000000, histogram.getMaxValue());
+        assertEquals(5000500, histogram.getMean(), 1);
+        assertEquals(5000000, histogram.getValueAtPercentile(50), 50000);
+        assertEquals(9900000, histogram.getValueAtPercentile(99), 99000);
+        assertEquals(10000000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void record_ClampsOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMaxValue());
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    void record_FromManyThreads() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        IntStream.range(0, 8).parallel().forEach(thread -> {
+            for (int i = 0; i < 100000; i++)
+                histogram.record(i);
+        });
+        assertEquals(800000, histogram.getTotalCount());
+        assertEquals(99999, histogram.getMaxValue());
+    }
+
+    @Test
+    void outputPercentiles_InTheFormatOfHdrHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i * 1000000L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.outputPercentiles(new PrintStream(bytes, true), 1e6);
+        String[] lines = bytes.toString().split("\\R");
+        assertTrue(lines[0].trim().startsWith("Value"));
+        // the values are counted with less than 1% error
+        assertTrue(lines[2].trim().matches("1\\.00\\d 0\\.000000000000 +1 +1\\.00"));
+        // the last percentile is 100%, with all the values
+        assertTrue(lines[lines.length - 4].trim().matches("100\\.000 1\\.000000000000 +100"));
+        assertTrue(lines[lines.length - 2].contains("Total count    =          100"));
+    }
+}
@@ -0,0 +1,48 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyMetricsTest {
+
+    @Test
+    void record_SkipsUnstampedStages() {
+        LatencyMetrics metrics = new LatencyMetrics(true);
+        long start = metrics.now();
+        metrics.record(LatencyMetrics.Stage.VALIDATION, start, start + 2000);
+        metrics.record(LatencyMetrics.Stage.VALIDATION, 0, start);
+        assertEquals(1, metrics.histogram(LatencyMetrics.Stage.VALIDATION).getTotalCount());
+        assertEquals(2000, metrics.histogram(LatencyMetrics.Stage.VALIDATION).getMaxValue());
+
+        metrics.reset();
+        assertEquals(0, metrics.histogram(LatencyMetrics.Stage.VALIDATION).getTotalCount());
+    }
+
+    @Test
+    void disabled_TakesNoStamps() {
+        LatencyMetrics metrics = new LatencyMetrics(false);
+        assertEquals(0, metrics.now());
+        metrics.record(LatencyMetrics.Stage.KEY_QUEUE, metrics.now(), metrics.now());
+        assertEquals(0, metrics.histogram(LatencyMetrics.Stage.KEY_QUEUE).getTotalCount());
+    }
+
+    @Test
+    void dump_PrintsTheRecordedStages() {
+        LatencyMetrics metrics = new LatencyMetrics(true);
+        metrics.record(LatencyMetrics.Stage.TOKEN, 1000, 6000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        metrics.dump(new PrintStream(bytes, true));
+        String text = bytes.toString();
+
+        // every stage is summed up, but only the recorded ones have a distribution
+        for (LatencyMetrics.Stage stage : LatencyMetrics.Stage.values())
+            assertTrue(text.contains(stage.title));
+        assertTrue(text.contains("# token placement (us)"));
+        assertFalse(text.contains("# key queue (us)"));
+        assertTrue(text.contains("#[Max     =        5.000, Total count    =            1]"));
+    }
+}
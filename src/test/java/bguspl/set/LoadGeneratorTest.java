@@ -0,0 +1,78 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorTest {
+
+    private final Logger logger = new Logger("", null) {};
+
+    @Test
+    void run_PlaysAGameAndReportsTheLatencies(@TempDir Path directory) throws Exception {
+        logger.setLevel(Level.OFF);
+        Path report = directory.resolve("report.hgrm");
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("FeatureCount", "3");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("PointFreezeSeconds", "0.01");
+        properties.setProperty("PenaltyFreezeSeconds", "0.01");
+        properties.setProperty("LoadConnections", "20");
+        properties.setProperty("LoadDurationSeconds", "30");
+        properties.setProperty("LoadReactionSeconds", "0.02");
+        properties.setProperty("LoadKeySeconds", "0.01");
+        properties.setProperty("LoadErrorRate", "0");
+        properties.setProperty("LoadReportFile", report.toString());
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+
+        Player[] players = new Player[config.players];
+        NetworkUserInterface ui = new NetworkUserInterface(logger, config, players, new InetSocketAddress("localhost", 0), null);
+        Env env = new Env(logger, config, ui, util);
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, true);
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        try {
+            new LoadGenerator(logger, config, util, ui.getAddress()).run();
+        } finally {
+            dealer.terminate();
+            dealerThread.join();
+            ui.dispose();
+        }
+
+        // the players played the game to its end, claiming sets as they went
+        String text = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+        assertTrue(text.contains("# key press to token"));
+        assertTrue(totalCount(text, "# key press to token") > 0);
+        assertTrue(totalCount(text, "# claim to point (score)") > 0);
+    }
+
+    /**
+     * @return - the total count of a histogram of the report.
+     */
+    private static long totalCount(String report, String title) throws IOException {
+        Matcher matcher = Pattern.compile("Total count +=\\s+(\\d+)").matcher(report);
+        if (!matcher.find(report.indexOf(title)))
+            throw new IOException("no histogram " + title);
+        return Long.parseLong(matcher.group(1));
+    }
+}
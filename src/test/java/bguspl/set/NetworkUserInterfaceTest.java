@@ -0,0 +1,126 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class NetworkUserInterfaceTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final Logger logger = new Logger("", null) {};
+
+    @Mock
+    private Player player;
+    @Mock
+    private UserInterface screen;
+
+    private NetworkUserInterface ui;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logger.setLevel(Level.OFF);
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "1");
+        Config config = new Config(logger, properties);
+        Player[] players = new Player[config.players];
+        players[0] = player;
+        ui = new NetworkUserInterface(logger, config, players, new InetSocketAddress("localhost", 0), screen);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ui.dispose();
+    }
+
+    @Test
+    void clients_AreSentTheStateAndItsChanges() throws IOException {
+        ui.placeCard(7, 3);
+        ui.placeToken(1, 3);
+        ui.setScore(0, 2);
+        try (NetworkClient client = new NetworkClient(ui.getAddress())) {
+            assertTrue(client.await(() -> client.getScore(0) == 2, TIMEOUT_MILLIS));
+            assertEquals(3, client.getRows());
+            assertEquals(4, client.getColumns());
+            assertEquals(7, client.getCard(3));
+            assertTrue(client.hasToken(1, 3));
+            assertEquals(NetworkProtocol.NONE, client.getCard(0));
+
+            ui.removeToken(1, 3);
+            ui.setFreeze(1, 3000);
+            for (long millis = 1000; millis >= 0; millis -= 10)
+                ui.setCountdown(millis, true);
+            ui.announceWinner(new int[]{0});
+            assertTrue(client.await(() -> client.getWinners() != null, TIMEOUT_MILLIS));
+            assertFalse(client.hasToken(1, 3));
+            assertEquals(3000, client.getFreeze(1));
+            assertEquals(NetworkProtocol.WARNING, client.getTimerMode());
+            assertEquals(0, client.getTimerMillis());
+            assertArrayEquals(new int[]{0}, client.getWinners());
+        }
+        // the calls are forwarded to the screen as well
+        verify(screen).placeCard(7, 3);
+        verify(screen).announceWinner(new int[]{0});
+    }
+
+    @Test
+    void join_DispatchesPressesToThePlayer() throws IOException {
+        try (NetworkClient first = new NetworkClient(ui.getAddress());
+             NetworkClient second = new NetworkClient(ui.getAddress())) {
+            first.join(0);
+            assertTrue(first.await(() -> first.getPlayer() == 0, TIMEOUT_MILLIS));
+            // a player is joined by one client at most, and computer players by none
+            second.join(0);
+            assertTrue(second.await(() -> second.getRejected() == 0, TIMEOUT_MILLIS));
+            second.join(2);
+            assertTrue(second.await(() -> second.getRejected() == 2, TIMEOUT_MILLIS));
+            assertEquals(NetworkProtocol.NONE, second.getPlayer());
+
+            first.press(5);
+            verify(player, timeout(TIMEOUT_MILLIS)).offerKeyPressed(5);
+        }
+        // the player can be joined again once its client disconnects
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (ui.getConnections() > 0 && System.currentTimeMillis() < deadline)
+            Thread.yield();
+        try (NetworkClient third = new NetworkClient(ui.getAddress())) {
+            third.join(0);
+            assertTrue(third.await(() -> third.getPlayer() == 0, TIMEOUT_MILLIS));
+        }
+    }
+
+    @Test
+    void server_MultiplexesManyClients() throws IOException {
+        List<NetworkClient> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 500; i++)
+                clients.add(new NetworkClient(ui.getAddress()));
+            ui.placeCard(11, 0);
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            for (NetworkClient client : clients)
+                assertTrue(client.await(() -> client.getCard(0) == 11, Math.max(1, deadline - System.currentTimeMillis())));
+            assertEquals(500, ui.getConnections());
+        } finally {
+            for (NetworkClient client : clients)
+                client.close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetFinderTest {
+
+    private static Config config(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        Logger logger = new Logger("", null) {};
+        return new Config(logger, properties);
+    }
+
+    private static Set<String> asStrings(List<int[]> sets) {
+        return sets.stream().map(Arrays::toString).collect(Collectors.toSet());
+    }
+
+    private static void assertParallelFindsSameSets(int featureSize, int featureCount) {
+        Config config = config(featureSize, featureCount);
+        CardFeatures features = new CardFeatures(config);
+        SetFinder finder = new SetFinder(config, new SetRule(config));
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(featureSize * 13L + featureCount));
+
+        List<int[]> sequential = finder.findSets(deck, Integer.MAX_VALUE, false);
+        List<int[]> parallel = finder.findSets(deck, Integer.MAX_VALUE, true);
+        assertEquals(sequential.size(), parallel.size());
+        assertEquals(asStrings(sequential), asStrings(parallel));
+
+        for (int count : new int[]{1, 7, sequential.size() + 1}) {
+            List<int[]> limited = finder.findSets(deck, count, true);
+            assertEquals(Math.min(count, sequential.size()), limited.size());
+            limited.forEach(set -> assertTrue(features.testSet(set)));
+        }
+    }
+
+    @Test
+    void findSets_ParallelPairs() {
+        assertParallelFindsSameSets(3, 6);
+    }
+
+    @Test
+    void findSets_ParallelCombinations() {
+        assertParallelFindsSameSets(4, 4);
+        assertParallelFindsSameSets(5, 3);
+    }
+}
@@ -0,0 +1,93 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetRuleTest {
+
+    private static Config config(int featureSize, int featureCount, String... settings) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        for (int i = 0; i < settings.length; i += 2)
+            properties.put(settings[i], settings[i + 1]);
+        Logger logger = new Logger("", null) {};
+        return new Config(logger, properties);
+    }
+
+    private static Set<String> asStrings(List<int[]> sets) {
+        return sets.stream().map(set -> {
+            int[] sorted = set.clone();
+            Arrays.sort(sorted);
+            return Arrays.toString(sorted);
+        }).collect(Collectors.toSet());
+    }
+
+    private static void assertFindsAllSets(Config config, boolean completable) {
+        UtilImpl util = new UtilImpl(config);
+        SetRule rule = new SetRule(config);
+        assertEquals(completable, rule.canComplete());
+
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        List<int[]> expected = util.findSetsByTesting(deck, Integer.MAX_VALUE);
+        List<int[]> actual = util.findSets(deck, Integer.MAX_VALUE);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(asStrings(expected), asStrings(actual));
+        actual.forEach(set -> {
+            assertEquals(config.setSize, set.length);
+            assertTrue(rule.test(set));
+        });
+    }
+
+    @Test
+    void classic_SameVerdictsAsFeatureComparison() {
+        Config config = config(3, 4);
+        UtilImpl util = new UtilImpl(config);
+        SetRule rule = new SetRule(config);
+        assertTrue(rule.isClassic());
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; ++i) {
+            int[] cards = random.ints(3, 0, config.deckSize).toArray();
+            assertEquals(util.testSetByFeatures(cards), rule.test(cards), Arrays.toString(cards));
+        }
+    }
+
+    @Test
+    void sum_LargerSets() {
+        assertFindsAllSets(config(4, 3, "SetRule", "sum"), true);
+        assertFindsAllSets(config(5, 2, "SetRule", "sum", "SetSize", "3"), true);
+    }
+
+    @Test
+    void perFeatureOverrides() {
+        assertFindsAllSets(config(3, 4, "FeatureRule1", "same", "FeatureRule2", "different", "FeatureRule3", "sum"), true);
+        assertFindsAllSets(config(3, 3, "FeatureRule2", "any"), false);
+        assertFindsAllSets(config(5, 2, "SetSize", "3"), false);
+    }
+
+    @Test
+    void sum_Completes() {
+        SetRule rule = new SetRule(config(5, 2, "SetRule", "sum", "SetSize", "3"));
+        // features (1, 2) + (2, 4) need (2, 4) to sum to multiples of 5
+        assertEquals(2 * 5 + 4, rule.complete(new int[]{1 * 5 + 2, 2 * 5 + 4}, 2));
+    }
+
+    @Test
+    void unknownRule() {
+        assertThrows(IllegalArgumentException.class, () -> new SetRule(config(3, 4, "SetRule", "odd")));
+    }
+}
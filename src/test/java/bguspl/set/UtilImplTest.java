@@ -0,0 +1,91 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    private static UtilImpl util(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        Logger logger = new Logger("", null) {};
+        return new UtilImpl(new Config(logger, properties));
+    }
+
+    private static Set<String> asStrings(List<int[]> sets) {
+        return sets.stream().map(set -> {
+            int[] sorted = set.clone();
+            Arrays.sort(sorted);
+            return Arrays.toString(sorted);
+        }).collect(Collectors.toSet());
+    }
+
+    private static void assertSameSetsAsTesting(int featureSize, int featureCount) {
+        UtilImpl util = util(featureSize, featureCount);
+        List<Integer> deck = IntStream.range(0, (int) Math.pow(featureSize, featureCount)).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(featureSize * 31L + featureCount));
+        for (int size : new int[]{deck.size(), deck.size() / 2, 12, 5}) {
+            List<Integer> cards = deck.subList(0, Math.min(size, deck.size()));
+            List<int[]> expected = util.findSetsByTesting(cards, Integer.MAX_VALUE);
+            List<int[]> actual = util.findSets(cards, Integer.MAX_VALUE);
+            assertEquals(expected.size(), actual.size());
+            assertEquals(asStrings(expected), asStrings(actual));
+            actual.forEach(set -> assertTrue(util.testSet(set)));
+        }
+    }
+
+    @Test
+    void findSets_ClassicDeck() {
+        assertSameSetsAsTesting(3, 4);
+    }
+
+    @Test
+    void findSets_GeneralizedDecks() {
+        assertSameSetsAsTesting(3, 2);
+        assertSameSetsAsTesting(4, 3);
+        assertSameSetsAsTesting(5, 2);
+        assertSameSetsAsTesting(2, 3);
+    }
+
+    private static void assertSameVerdictsAsFeatures(int featureSize, int featureCount) {
+        UtilImpl util = util(featureSize, featureCount);
+        Random random = new Random(featureSize * 17L + featureCount);
+        int deckSize = (int) Math.pow(featureSize, featureCount);
+        for (int length = 1; length <= featureSize + 1; ++length)
+            for (int i = 0; i < 2000; ++i) {
+                int[] cards = random.ints(length, 0, deckSize).toArray();
+                assertEquals(util.testSetByFeatures(cards), util.testSet(cards), Arrays.toString(cards));
+            }
+    }
+
+    @Test
+    void testSet_SameVerdictsAsFeatureComparison() {
+        assertSameVerdictsAsFeatures(3, 4);
+        assertSameVerdictsAsFeatures(3, 2);
+        assertSameVerdictsAsFeatures(2, 5);
+        assertSameVerdictsAsFeatures(4, 3);
+        assertSameVerdictsAsFeatures(5, 2);
+        assertSameVerdictsAsFeatures(9, 2);
+    }
+
+    @Test
+    void findSets_RespectsCount() {
+        UtilImpl util = util(3, 4);
+        List<Integer> deck = IntStream.range(0, 81).boxed().collect(Collectors.toList());
+        assertEquals(1, util.findSets(deck, 1).size());
+        assertEquals(1080, util.findSets(deck, Integer.MAX_VALUE).size());
+    }
+}
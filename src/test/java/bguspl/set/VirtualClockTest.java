@@ -0,0 +1,31 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VirtualClockTest {
+
+    @Test
+    void await_TimedOutAdvancesToTheDeadline() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(1000);
+        Condition condition = mock(Condition.class);
+        when(condition.await(1, TimeUnit.MILLISECONDS)).thenReturn(false);
+        clock.await(condition, 500);
+        assertEquals(1500, clock.currentTimeMillis());
+    }
+
+    @Test
+    void await_SignalledLeavesTheClock() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(1000);
+        Condition condition = mock(Condition.class);
+        when(condition.await(1, TimeUnit.MILLISECONDS)).thenReturn(true);
+        clock.await(condition, 500);
+        assertEquals(1000, clock.currentTimeMillis());
+    }
+}
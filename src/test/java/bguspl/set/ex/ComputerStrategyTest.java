@@ -0,0 +1,83 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComputerStrategyTest {
+
+    private Env env;
+    private Table table;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("ComputerStrategy", "solver");
+        properties.put("ComputerReactionSeconds", "0");
+        properties.put("ComputerAccuracy", "1");
+        properties.put("TableDelaySeconds", "0");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), util);
+        table = new Table(env);
+    }
+
+    @Test
+    void create_PicksTheConfiguredStrategy() throws InterruptedException {
+        assertTrue(ComputerStrategy.create(env, table, 0) instanceof SolverStrategy);
+        Properties properties = new Properties();
+        properties.put("ComputerStrategy", "random");
+        Env random = new Env(env.logger, new Config(env.logger, properties), env.ui, env.util);
+        assertTrue(ComputerStrategy.create(random, table, 0) instanceof RandomStrategy);
+        int slot = ComputerStrategy.create(random, table, 0).nextKeys()[0];
+        assertTrue(slot >= 0 && slot < env.config.tableSize);
+
+        properties.put("ComputerStrategy", "genius");
+        Env unknown = new Env(env.logger, new Config(env.logger, properties), env.ui, env.util);
+        assertThrows(IllegalArgumentException.class, () -> ComputerStrategy.create(unknown, table, 0));
+    }
+
+    @Test
+    void solver_PressesTheSlotsOfASet() throws InterruptedException {
+        // cards 0, 1 and 2 are the only set among these
+        int[] cards = {4, 0, 9, 1, 13, 2};
+        for (int slot = 0; slot < cards.length; slot++)
+            table.placeCard(cards[slot], slot);
+        // a token off the set is toggled off first
+        table.placeToken(0, 2);
+
+        int[] keys = ComputerStrategy.create(env, table, 0).nextKeys();
+        assertEquals(2, keys[0]);
+        int[] set = Arrays.copyOfRange(keys, 1, keys.length);
+        assertEquals(env.config.setSize, set.length);
+        assertArrayEquals(new int[]{1, 3, 5}, Arrays.stream(set).sorted().toArray());
+        assertTrue(env.util.testSet(table.getCards(set)));
+    }
+
+    @Test
+    void solver_WaitsForASet() throws InterruptedException {
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        ComputerStrategy solver = ComputerStrategy.create(env, table, 0);
+        int[][] keys = new int[1][];
+        Thread thread = new Thread(() -> {
+            try {
+                keys[0] = solver.nextKeys();
+            } catch (InterruptedException ignored) {}
+        });
+        thread.start();
+        table.placeCard(2, 5);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertArrayEquals(new int[]{0, 1, 5}, Arrays.stream(keys[0]).sorted().toArray());
+    }
+}
@@ -12,15 +12,22 @@ import java.util.logging.Logger;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.LatencyMetrics;
+import bguspl.set.SystemClock;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -53,6 +60,29 @@ class DealerTest {
         dealer = new Dealer(env, table, new Player[]{player1,player2});
     }
 
+    /**
+     * A game with the real rules, whose dealer and players are bound to one another.
+     */
+    private Game realGame(int players){
+        return new Game(new Env(env.logger, env.config, ui, new UtilImpl(env.config)), players);
+    }
+
+    private static class Game {
+        final Env env;
+        final Table table;
+        final Player[] players;
+        final Dealer dealer;
+
+        Game(Env env, int players) {
+            this.env = env;
+            table = new Table(env);
+            this.players = new Player[players];
+            dealer = new Dealer(env, table, this.players);
+            for (int i = 0; i < players; i++)
+                this.players[i] = new Player(env, dealer, table, i, false);
+        }
+    }
+
     @Test
     void freezeTest(){
         dealer.freezePlayer(0, 3000);
@@ -61,6 +91,113 @@ class DealerTest {
         Assertions.assertEquals(false, player1.isFreeze());
     }
 
+    @Test
+    void conflictingClaimsTest(){
+        Game game = realGame(2);
+
+        // cards 0, 1, 2 and 0, 3, 6 are both sets (sharing card 0)
+        int[] cards = {0, 1, 2, 3, 6};
+        for (int slot = 0; slot < cards.length; slot++)
+            game.table.placeCard(cards[slot], slot);
+        for (int slot : new int[]{0, 1, 2})
+            game.table.placeToken(0, slot);
+        for (int slot : new int[]{0, 3, 4})
+            game.table.placeToken(1, slot);
+        game.dealer.enterPlayerWithSet(0);
+        game.dealer.enterPlayerWithSet(1);
+        game.dealer.checkSet();
+
+        // the first claim wins, the second is void (no point and no penalty)
+        Assertions.assertEquals(1, game.players[0].getScore());
+        Assertions.assertEquals(0, game.players[1].getScore());
+        Assertions.assertEquals(false, game.players[1].isFreeze());
+        Assertions.assertEquals(2, game.table.countCards());
+    }
+
+    @Test
+    void setsLeftTest(){
+        Game game = realGame(1);
+        Assertions.assertEquals(1080, game.dealer.countSetsLeft());
+
+        for (int slot = 0; slot < 3; slot++) {
+            game.table.placeCard(slot, slot);
+            game.table.placeToken(0, slot);
+        }
+        game.dealer.enterPlayerWithSet(0);
+        game.dealer.checkSet();
+
+        List<Integer> liveCards = IntStream.range(3, env.config.deckSize).boxed().collect(Collectors.toList());
+        Assertions.assertEquals(game.env.util.findSets(liveCards, Integer.MAX_VALUE).size(), game.dealer.countSetsLeft());
+        Assertions.assertEquals(true, game.dealer.hasSetsLeft());
+        Assertions.assertEquals(1, game.players[0].getScore());
+    }
+
+    @Test
+    void takeRecordedBatchTest(){
+        List<String> journal = new ArrayList<>();
+        Env env = new Env(this.env.logger, this.env.config, ui, new UtilImpl(this.env.config), new SystemClock(),
+                (event, player, slot, card, value) -> journal.add(event + " " + player + " " + slot + " " + value));
+        Game game = new Game(env, 2);
+        for (int slot = 0; slot < 6; slot++)
+            game.table.placeCard(slot, slot);
+        for (int slot : new int[]{0, 1, 2})
+            game.table.placeToken(0, slot);
+        for (int slot : new int[]{3, 4, 5})
+            game.table.placeToken(1, slot);
+        game.dealer.enterPlayerWithSet(1);
+        game.dealer.enterPlayerWithSet(0);
+        game.dealer.setClaimSequence(5);
+        game.dealer.enterPlayerWithSet(1);
+        journal.clear();
+
+        // the batch takes only the claims it is given, and journals them in the order they were made
+        game.dealer.takeClaims(new long[]{5, 0});
+        Assertions.assertEquals(Arrays.asList("CLAIMS_TAKEN 1 0 2", "CLAIMS_TAKEN 1 5 2"), journal);
+        game.dealer.checkSet();
+        Assertions.assertEquals(true, game.dealer.hasClaims());
+        game.dealer.takeClaims();
+        Assertions.assertEquals("CLAIMS_TAKEN 0 1 1", journal.get(journal.size() - 1));
+    }
+
+    @Test
+    void claimLatencyTest(){
+        Properties properties = new Properties();
+        properties.put("ComputerPlayers", "1");
+        properties.put("LatencyMetrics", "True");
+        Config config = new Config(env.logger, properties);
+        Game game = new Game(new Env(env.logger, config, ui, new UtilImpl(config)), 3);
+        LatencyMetrics metrics = game.env.metrics;
+
+        // players 0 and 2 claim sets and player 1 a non-set, player 2 with no stamp of its key press
+        for (int slot = 0; slot < 9; slot++)
+            game.table.placeCard(slot, slot);
+        for (int slot : new int[]{0, 1, 2})
+            game.table.placeToken(0, slot);
+        for (int slot : new int[]{3, 4, 7})
+            game.table.placeToken(1, slot);
+        for (int slot : new int[]{6, 7, 8})
+            game.table.placeToken(2, slot);
+        game.dealer.enterPlayerWithSet(0, metrics.now());
+        game.dealer.enterPlayerWithSet(1, metrics.now());
+        game.dealer.enterPlayerWithSet(2);
+        game.dealer.checkSet();
+
+        Assertions.assertEquals(1, game.players[0].getScore());
+        Assertions.assertEquals(0, game.players[1].getScore());
+        Assertions.assertEquals(true, game.players[1].isFreeze());
+        Assertions.assertEquals(1, game.players[2].getScore());
+        // every claim goes through the dealer's stages, but only the stamped key presses are measured to the verdict
+        Assertions.assertEquals(3, metrics.histogram(LatencyMetrics.Stage.CLAIM_QUEUE).getTotalCount());
+        Assertions.assertEquals(3, metrics.histogram(LatencyMetrics.Stage.DEALER_PICKUP).getTotalCount());
+        Assertions.assertEquals(3, metrics.histogram(LatencyMetrics.Stage.VALIDATION).getTotalCount());
+        Assertions.assertEquals(3, metrics.histogram(LatencyMetrics.Stage.UI_UPDATE).getTotalCount());
+        Assertions.assertEquals(2, metrics.histogram(LatencyMetrics.Stage.KEY_TO_VERDICT).getTotalCount());
+        Assertions.assertEquals(0, metrics.histogram(LatencyMetrics.Stage.KEY_QUEUE).getTotalCount());
+
+        // the metrics are off by default
+        Assertions.assertEquals(0, env.metrics.now());
+    }
+
     @Test
     void placeCardsTest(){
         List<Integer> deck= dealer.getDeck();
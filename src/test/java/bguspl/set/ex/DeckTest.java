@@ -0,0 +1,54 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DeckTest {
+
+    @Test
+    void drawAndAdd() {
+        Deck deck = new Deck(5, new SplittableRandom(1));
+        assertEquals(4, deck.draw());
+        assertEquals(3, deck.draw());
+        assertEquals(3, deck.size());
+        deck.add(4);
+        assertEquals(4, deck.size());
+        assertEquals(4, deck.draw());
+        for (int i = 0; i < 3; i++)
+            deck.draw();
+        Assertions.assertTrue(deck.isEmpty());
+        Assertions.assertThrows(NoSuchElementException.class, deck::draw);
+    }
+
+    @Test
+    void shuffle_IsAPermutationAndReproducible() {
+        Deck deck = new Deck(81, new SplittableRandom(42));
+        Deck same = new Deck(81, new SplittableRandom(42));
+        deck.shuffle();
+        same.shuffle();
+        assertEquals(same.asList(), deck.asList());
+
+        List<Integer> sorted = new ArrayList<>(deck.asList());
+        sorted.sort(null);
+        assertEquals(IntStream.range(0, 81).boxed().collect(Collectors.toList()), sorted);
+        Assertions.assertNotEquals(sorted, deck.asList());
+    }
+
+    @Test
+    void asList_FollowsTheDeck() {
+        Deck deck = new Deck(3, new SplittableRandom(1));
+        List<Integer> view = deck.asList();
+        deck.draw();
+        assertEquals(2, view.size());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> view.add(7));
+    }
+}
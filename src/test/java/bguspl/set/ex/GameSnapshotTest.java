@@ -0,0 +1,182 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private Path path;
+    private TableTest.MockLogger logger;
+    private Config config;
+    private Util util;
+
+    @BeforeEach
+    void setUp() {
+        path = directory.resolve("game.snapshot");
+        logger = new TableTest.MockLogger();
+        config = config(2);
+        util = new UtilImpl(config);
+    }
+
+    private Config config(int players) {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", Integer.toString(players));
+        properties.setProperty("TableDelaySeconds", "0");
+        return new Config(logger, properties);
+    }
+
+    private static void fill(GameSnapshot snapshot, int seed) {
+        snapshot.reshuffleLeft = 1000 + seed;
+        snapshot.deckCount = snapshot.deck.length - snapshot.cards.length;
+        for (int i = 0; i < snapshot.deck.length; i++)
+            snapshot.deck[i] = (i + seed) % snapshot.deck.length;
+        Arrays.fill(snapshot.cards, -1);
+        snapshot.cards[seed % snapshot.cards.length] = (snapshot.deckCount + seed) % snapshot.deck.length;
+        snapshot.tokens[0] = 1L << (seed % snapshot.cards.length);
+        Arrays.fill(snapshot.scores, seed);
+        Arrays.fill(snapshot.freezeLeft, -1);
+        snapshot.freezeLeft[1] = seed;
+    }
+
+    @Test
+    void load_ReturnsLastSaved() throws IOException {
+        try (GameSnapshot snapshot = new GameSnapshot(path, config)) {
+            assertFalse(snapshot.load());
+            fill(snapshot, 1);
+            snapshot.save();
+            fill(snapshot, 2);
+            snapshot.save();
+        }
+        try (GameSnapshot snapshot = new GameSnapshot(path, config)) {
+            assertTrue(snapshot.load());
+            GameSnapshot expected = new GameSnapshot(directory.resolve("expected.snapshot"), config);
+            fill(expected, 2);
+            expected.close();
+            assertEquals(expected.reshuffleLeft, snapshot.reshuffleLeft);
+            assertEquals(expected.deckCount, snapshot.deckCount);
+            assertArrayEquals(expected.deck, snapshot.deck);
+            assertArrayEquals(expected.cards, snapshot.cards);
+            assertArrayEquals(expected.tokens, snapshot.tokens);
+            assertArrayEquals(expected.scores, snapshot.scores);
+            assertArrayEquals(expected.freezeLeft, snapshot.freezeLeft);
+        }
+    }
+
+    @Test
+    void load_SkipsTornSnapshot() throws IOException {
+        try (GameSnapshot snapshot = new GameSnapshot(path, config)) {
+            fill(snapshot, 1);
+            snapshot.save();
+            fill(snapshot, 2);
+            snapshot.save();
+        }
+        // the second snapshot (saved in the first region) is cut short, as by a crash while saving
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), GameSnapshot.HEADER_SIZE + 16);
+        }
+        try (GameSnapshot snapshot = new GameSnapshot(path, config)) {
+            assertTrue(snapshot.load());
+            assertEquals(1001, snapshot.reshuffleLeft);
+            snapshot.clear();
+            assertFalse(snapshot.load());
+        }
+    }
+
+    @Test
+    void snapshot_DiscardedForOtherConfiguration() throws IOException {
+        try (GameSnapshot snapshot = new GameSnapshot(path, config)) {
+            fill(snapshot, 1);
+            snapshot.save();
+        }
+        try (GameSnapshot snapshot = new GameSnapshot(path, config(3))) {
+            assertFalse(snapshot.load());
+        }
+    }
+
+    /**
+     * A dealer and players on a virtual clock (the dealer's thread is not started).
+     */
+    private static final class Game {
+        final VirtualClock clock = new VirtualClock(5000);
+        final Table table;
+        final Player[] players;
+        final Dealer dealer;
+
+        Game(TableTest.MockLogger logger, Config config, Util util, GameSnapshot snapshot) {
+            Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util, clock, GameJournal.NONE);
+            table = new Table(env);
+            players = new Player[config.players];
+            dealer = new Dealer(env, table, players, 3L, snapshot);
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(env, dealer, table, i, false);
+            dealer.resumePlay();
+        }
+    }
+
+    @Test
+    void resume_RestoresCheckpoint() throws IOException, InterruptedException {
+        int[] cards = new int[config.tableSize];
+        Game game;
+        try (GameSnapshot snapshot = new GameSnapshot(path, config)) {
+            game = new Game(logger, config, util, snapshot);
+            assertFalse(game.dealer.resume());
+            game.dealer.startRound();
+            game.table.snapshot(cards);
+            List<Integer> onTable = Arrays.stream(cards).boxed().collect(Collectors.toList());
+            game.clock.sleep(2000);
+            for (int card : util.findSets(onTable, 1).get(0))
+                game.players[0].toggle(onTable.indexOf(card));
+            game.players[0].claim();
+            game.dealer.tick();
+            game.players[1].toggle(0);
+            game.dealer.checkpoint();
+        }
+        assertEquals(1, game.players[0].getScore());
+        assertTrue(game.players[0].isFreeze());
+
+        try (GameSnapshot snapshot = new GameSnapshot(path, config)) {
+            Game resumed = new Game(logger, config, util, snapshot);
+            resumed.clock.sleep(100000);
+            assertTrue(resumed.dealer.resume());
+            game.table.snapshot(cards);
+            int[] resumedCards = new int[config.tableSize];
+            resumed.table.snapshot(resumedCards);
+            assertArrayEquals(cards, resumedCards);
+            assertEquals(game.dealer.getDeck(), resumed.dealer.getDeck());
+            assertEquals(game.dealer.countSetsLeft(), resumed.dealer.countSetsLeft());
+            assertArrayEquals(game.table.getTokenSlots(1), resumed.table.getTokenSlots(1));
+            assertEquals(0, resumed.table.tokenCount(0));
+            assertEquals(1, resumed.players[0].getScore());
+            assertTrue(resumed.players[0].isFreeze());
+            assertFalse(resumed.players[1].isFreeze());
+            // the countdown (reset by the point) goes on from where it was rather than from the restart
+            resumed.clock.sleep(config.turnTimeoutMillis - 1);
+            assertTrue(resumed.dealer.roundGoesOn());
+            resumed.clock.sleep(1);
+            assertFalse(resumed.dealer.roundGoesOn());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.FileGameJournal;
+import bguspl.set.GameJournal;
+import bguspl.set.GameJournalReader;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayTest {
+
+    /**
+     * The layout of a recording (see FileGameJournal).
+     */
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 32;
+    private static final int CARD_OFFSET = 24;
+
+    @TempDir
+    Path directory;
+
+    private Path path;
+    private TableTest.MockLogger logger;
+    private Config config;
+    private Util util;
+
+    @BeforeEach
+    void setUp() throws IOException, InterruptedException {
+        path = directory.resolve("game.journal");
+        logger = new TableTest.MockLogger();
+        config = new Config(logger, properties(2));
+        util = new UtilImpl(config);
+        record();
+    }
+
+    private static Properties properties(int players) {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", Integer.toString(players));
+        properties.setProperty("TableDelaySeconds", "0.01");
+        return properties;
+    }
+
+    /**
+     * Records a short game: the first player claims a set, then the second player claims cards that are not a set.
+     */
+    private void record() throws IOException, InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        try (FileGameJournal journal = new FileGameJournal(path, logger, config, clock, 7L)) {
+            Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util, clock, journal);
+            Table table = new Table(env);
+            Player[] players = new Player[config.players];
+            Dealer dealer = new Dealer(env, table, players, 7L);
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(env, dealer, table, i, false);
+            dealer.resumePlay();
+            dealer.startRound();
+
+            int[] cards = new int[config.tableSize];
+            table.snapshot(cards);
+            List<Integer> onTable = Arrays.stream(cards).boxed().collect(Collectors.toList());
+            int[] set = util.findSets(onTable, 1).get(0);
+            clock.sleep(1000);
+            pressAndClaim(players[0], Arrays.stream(set).map(onTable::indexOf).toArray());
+            clock.sleep(5);
+            dealer.tick();
+
+            table.snapshot(cards);
+            int[] notSet = {0, 1, 2};
+            while (util.testSet(new int[]{cards[notSet[0]], cards[notSet[1]], cards[notSet[2]]}))
+                ++notSet[2];
+            clock.sleep(1000);
+            pressAndClaim(players[1], notSet);
+            clock.sleep(5);
+            dealer.tick();
+        }
+    }
+
+    private static void pressAndClaim(Player player, int[] slots) {
+        for (int i = 0; i < slots.length; i++)
+            assertEquals(i == slots.length - 1, player.toggle(slots[i]));
+        player.claim();
+    }
+
+    @Test
+    void replay_MatchesRecording() throws IOException {
+        Replay replay = new Replay(logger, config, util, path);
+        assertNull(replay.run());
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            assertEquals(reader.count(), replay.getEventCount());
+        }
+    }
+
+    @Test
+    void replay_ReportsDivergence() throws IOException {
+        // change the first card dealt (after the shuffle), so the recording no longer follows from its seed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer card = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(card, HEADER_SIZE + RECORD_SIZE + CARD_OFFSET);
+            int recorded = card.getInt(0);
+            card.putInt(0, recorded == 0 ? 1 : 0).rewind();
+            channel.write(card, HEADER_SIZE + RECORD_SIZE + CARD_OFFSET);
+        }
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            assertTrue(reader.next() && reader.next());
+            assertEquals(GameJournal.Event.CARD_PLACED, reader.event());
+        }
+
+        String divergence = new Replay(logger, config, util, path).run();
+        assertNotNull(divergence);
+        assertTrue(divergence.startsWith("event 1 (dealer)"), divergence);
+    }
+
+    @Test
+    void replay_RejectsOtherConfiguration() {
+        Config other = new Config(logger, properties(3));
+        assertThrows(IOException.class, () -> new Replay(logger, other, new UtilImpl(other), path).run());
+    }
+}
@@ -4,21 +4,30 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
     private Integer[] slotToCard;
     private Integer[] cardToSlot;
+    private Env env;
 
     @BeforeEach
     void setUp() {
@@ -36,7 +45,7 @@ class TableTest {
         slotToCard = new Integer[config.tableSize];
         cardToSlot = new Integer[config.deckSize];
 
-        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
+        env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
     }
 
@@ -119,6 +128,209 @@ class TableTest {
         Assertions.assertEquals(3, table.tokenCount(0));
     }
 
+    @Test
+    void toggleToken(){
+        table.placeCard(0,0);
+        Assertions.assertEquals(true, table.toggleToken(0,0));
+        Assertions.assertEquals(true, table.checkToken(0,0));
+        Assertions.assertEquals(false, table.toggleToken(0,0));
+        Assertions.assertEquals(false, table.checkToken(0,0));
+        Assertions.assertEquals(false, table.toggleToken(0,1));
+        Assertions.assertEquals(0, table.tokenCount(0));
+    }
+
+    @Test
+    void tokens_AcrossWords(){
+        // more than 64 slots and players, so a player's slots and a slot's players each span two words
+        Properties properties = new Properties();
+        properties.put("Rows", "9");
+        properties.put("Columns", "9");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "70");
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        Table table = new Table(new Env(logger, config, new MockUserInterface(), new MockUtil()));
+        assertEquals(81, config.tableSize);
+        assertEquals(70, config.players);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot, slot);
+
+        int[] players = {0, 63, 64, 69};
+        for (int player : players)
+            for (int slot : new int[]{63, 64, 80})
+                Assertions.assertEquals(true, table.toggleToken(player, slot));
+        Assertions.assertEquals(true, table.toggleToken(1, 0));
+        Assertions.assertEquals(false, table.toggleToken(64, 80));
+        Assertions.assertEquals(true, table.toggleToken(64, 0));
+        Assertions.assertArrayEquals(new int[]{63, 64, 80}, table.getTokenSlots(69));
+        Assertions.assertArrayEquals(new int[]{0, 63, 64}, table.getTokenSlots(64));
+        Assertions.assertEquals(3, table.tokenCount(63));
+
+        // the slot's players are found across both words of the slot, and only their tokens on the slot are removed
+        table.removeTokensFromSlot(64);
+        for (int player : players) {
+            Assertions.assertEquals(false, table.checkToken(player, 64));
+            Assertions.assertEquals(true, table.checkToken(player, 63));
+        }
+        Assertions.assertArrayEquals(new int[]{63, 80}, table.getTokenSlots(69));
+        Assertions.assertArrayEquals(new int[]{0, 63}, table.getTokenSlots(64));
+        table.removeTokensFromSlot(0);
+        Assertions.assertEquals(0, table.tokenCount(1));
+        Assertions.assertArrayEquals(new int[]{63}, table.getTokenSlots(64));
+        Assertions.assertArrayEquals(new int[]{63, 80}, table.getTokenSlots(0));
+    }
+
+    @Test
+    void emptySlots_PrimitiveMaps(){
+        Table table = new Table(env);
+        Assertions.assertEquals(0, table.countCards());
+        table.placeCard(7, 0);
+        table.placeCard(8, 2);
+        Assertions.assertEquals(2, table.countCards());
+        Assertions.assertEquals(1, table.nextEmptySlot(0));
+        Assertions.assertEquals(3, table.nextEmptySlot(2));
+        Assertions.assertEquals(Arrays.asList(1, 3), table.getEmptySlots());
+        Assertions.assertEquals(7, table.removeCard(0));
+        Assertions.assertEquals(-1, table.cardAt(0));
+        Assertions.assertEquals(0, table.nextEmptySlot(0));
+        Assertions.assertEquals(1, table.countCards());
+    }
+
+    @Test
+    void placeAndRemoveCards_SingleUiUpdate(){
+        int[] updates = new int[1];
+        Env env = new Env(this.env.logger, this.env.config, new MockUserInterface() {
+            @Override
+            public void placeCards(int[] cards, int[] slots) { updates[0]++; }
+            @Override
+            public void removeCards(int[] slots) { updates[0]++; }
+        }, new MockUtil());
+        Table table = new Table(env);
+
+        table.placeCards(new int[]{5, 6, 7}, new int[]{3, 0, 2});
+        Assertions.assertEquals(1, updates[0]);
+        Assertions.assertEquals(3, table.countCards());
+        Assertions.assertEquals(6, table.cardAt(0));
+        Assertions.assertEquals(5, table.cardAt(3));
+
+        Assertions.assertArrayEquals(new int[]{7, -1, 6}, table.removeCards(new int[]{2, 1, 0}));
+        Assertions.assertEquals(2, updates[0]);
+        Assertions.assertArrayEquals(new int[]{5}, table.removeAllCardsAndReturn());
+        Assertions.assertEquals(0, table.countCards());
+    }
+
+    @Test
+    void snapshot_NeverHoldsPartOfABatch() throws InterruptedException {
+        Table table = new Table(env);
+        int[] slots = IntStream.range(0, env.config.tableSize).toArray();
+        int[] cards = IntStream.range(0, env.config.tableSize).toArray();
+        Thread dealer = new Thread(() -> {
+            for (int round = 0; round < 1000; round++) {
+                table.placeCards(cards, slots);
+                table.removeCards(slots);
+            }
+        });
+        dealer.start();
+
+        int[] snapshot = new int[env.config.tableSize];
+        while (dealer.isAlive()) {
+            long version = table.snapshot(snapshot);
+            long count = Arrays.stream(snapshot).filter(card -> card != -1).count();
+            assertTrue(count == 0 || count == snapshot.length, "torn snapshot " + Arrays.toString(snapshot));
+            assertEquals(count != 0, version % 2 == 1);
+        }
+        dealer.join();
+    }
+
+    @Test
+    void snapshot_DoesNotWaitForTheDisplay() throws InterruptedException {
+        CountDownLatch displaying = new CountDownLatch(1);
+        CountDownLatch displayed = new CountDownLatch(1);
+        Env env = new Env(this.env.logger, this.env.config, new MockUserInterface() {
+            @Override
+            public void placeCard(int card, int slot) {
+                displaying.countDown();
+                try {
+                    displayed.await();
+                } catch (InterruptedException ignored) {}
+            }
+        }, this.env.util);
+        Table table = new Table(env);
+        Thread dealer = new Thread(() -> table.placeCard(7, 1));
+        dealer.start();
+        displaying.await();
+
+        int[] snapshot = new int[env.config.tableSize];
+        assertEquals(1, table.snapshot(snapshot));
+        assertEquals(7, snapshot[1]);
+        displayed.countDown();
+        dealer.join();
+    }
+
+    @Test
+    void setIndex_MatchesFindSets(){
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        assertSetIndexMatchesFindSets(properties);
+    }
+
+    @Test
+    void setIndex_MatchesFindSets_SumRule(){
+        // with a feature size other than 3 two cards may complete to one of themselves, which is no set
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("FeatureSize", "4");
+        properties.put("FeatureCount", "3");
+        properties.put("SetSize", "3");
+        properties.put("SetRule", "sum");
+        assertSetIndexMatchesFindSets(properties);
+
+        properties.put("FeatureCount", "2");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        Table table = new Table(new Env(logger, config, new MockUserInterface(), new UtilImpl(config)));
+        table.placeCard(2, 0);
+        table.placeCard(1, 5);
+        assertEquals(false, table.hasSet());
+        assertEquals(false, table.isInSet(5));
+        assertEquals(0, table.getSets().size());
+    }
+
+    private static void assertSetIndexMatchesFindSets(Properties properties){
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        Table table = new Table(new Env(logger, config, new MockUserInterface(), util));
+        Random random = new Random(7);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, random);
+        for(int round = 0; round < 200; round++){
+            List<Integer> emptySlots = table.getEmptySlots();
+            if(!emptySlots.isEmpty() && (random.nextBoolean() || emptySlots.size() == config.tableSize))
+                table.placeCard(deck.remove(0), emptySlots.get(random.nextInt(emptySlots.size())));
+            else {
+                int slot = random.nextInt(config.tableSize);
+                if(table.cardAt(slot) != -1)
+                    deck.add(table.removeCard(slot));
+            }
+
+            List<Integer> cards = IntStream.range(0, config.tableSize).map(table::cardAt).filter(card -> card != -1).boxed().collect(Collectors.toList());
+            List<int[]> expected = util.findSets(cards, Integer.MAX_VALUE);
+            List<int[]> actual = table.getSets();
+            assertEquals(expected.size(), actual.size());
+            assertEquals(!expected.isEmpty(), table.hasSet());
+            for(int[] set: actual){
+                assertTrue(util.testSet(table.getCards(set.clone())));
+                for(int slot: set)
+                    assertTrue(table.isInSet(slot));
+            }
+        }
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -167,6 +379,11 @@ class TableTest {
             return null;
         }
 
+        @Override
+        public int completeSet(int[] cards) {
+            return -1;
+        }
+
         @Override
         public void spin() {}
     }